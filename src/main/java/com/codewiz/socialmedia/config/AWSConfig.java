@@ -1,14 +1,17 @@
 package com.codewiz.socialmedia.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.net.URI;
 
@@ -22,8 +25,8 @@ public class AWSConfig {
     public S3Client s3Client(
             @Value("${aws.s3.accessKey}") String accessKey,
             @Value("${aws.s3.secretKey}") String secretKey,
-            @Value("${aws.s3.endpoint}") String endpoint
-
+            @Value("${aws.s3.endpoint}") String endpoint,
+            MeterRegistry meterRegistry
     ) {
         log.info("AccessKey", accessKey);
         AwsBasicCredentials credentials = AwsBasicCredentials.create(accessKey, secretKey);
@@ -32,9 +35,53 @@ public class AWSConfig {
                 .credentialsProvider(StaticCredentialsProvider.create(credentials))
                 .region(Region.AP_SOUTHEAST_2)
                 .endpointOverride(URI.create(endpoint))
+                .overrideConfiguration(config -> config.addMetricPublisher(new S3MetricsPublisher(meterRegistry)))
                 .build();
     }
 
+    // Presigner dùng chung cho toàn ứng dụng, tránh khởi tạo lại cho mỗi URL
+    @Bean
+    public S3Presigner s3Presigner(
+            @Value("${aws.s3.accessKey}") String accessKey,
+            @Value("${aws.s3.secretKey}") String secretKey,
+            @Value("${aws.s3.endpoint}") String endpoint
+    ) {
+        AwsBasicCredentials credentials = AwsBasicCredentials.create(accessKey, secretKey);
+
+        return S3Presigner.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(credentials))
+                .region(Region.AP_SOUTHEAST_2)
+                .endpointOverride(URI.create(endpoint))
+                .build();
+    }
+
+    // Thread pool upload song song các part của multipart upload. S3UploadService chỉ gửi part khi đã giữ một
+    // trong max-buffered-parts buffer, nên hàng đợi không bao giờ vượt quá số đó
+    @Bean
+    public ThreadPoolTaskExecutor s3UploadExecutor(
+            @Value("${aws.s3.upload.threads:8}") int threads,
+            @Value("${aws.s3.upload.max-buffered-parts:16}") int maxBufferedParts
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(maxBufferedParts);
+        executor.setThreadNamePrefix("s3-upload-");
+        return executor;
+    }
+
+    // Thread pool chạy các job xoá media nền (MediaPurgeService)
+    @Bean
+    public ThreadPoolTaskExecutor mediaPurgeExecutor(
+            @Value("${media.purge.threads:2}") int threads
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("media-purge-");
+        return executor;
+    }
+
 }
 
 
@@ -0,0 +1,56 @@
+package com.codewiz.socialmedia.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    // Khi đã khai báo executor riêng (s3UploadExecutor, ...), Spring Boot không tạo executor mặc định nữa.
+    // Khai báo lại để Spring MVC async và @Async vẫn dùng thread pool theo cấu hình spring.task.execution.*
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    // Fan-out timeline chạy nền; hàng đợi có giới hạn, khi đầy thì thread gọi tự chạy (backpressure lên request tạo bài)
+    @Bean
+    public ThreadPoolTaskExecutor timelineFanoutExecutor(
+            @Value("${timeline.fanout.threads:4}") int threads,
+            @Value("${timeline.fanout.queue-capacity:1000}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.setThreadNamePrefix("timeline-fanout-");
+        return executor;
+    }
+
+    // Tạo ảnh thu nhỏ; hàng đợi có giới hạn, đầy thì bỏ qua (bài viết dùng ảnh gốc) thay vì chiếm thread request
+    @Bean
+    public ThreadPoolTaskExecutor imageVariantExecutor(
+            @Value("${media.variants.threads:2}") int threads,
+            @Value("${media.variants.queue-capacity:200}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-variant-");
+        return executor;
+    }
+}
@@ -0,0 +1,82 @@
+package com.codewiz.socialmedia.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+// Cache các token đã xác thực thành công, key là SHA-256 của token (không giữ token gốc trong bộ nhớ).
+// Mỗi entry hết hạn đúng lúc token hết hạn (exp) và không lâu hơn maxTtl; token lỗi không được cache.
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maxSize, Duration maxTtl, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Jwt>() {
+                    @Override
+                    public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+                        return timeToLive(jwt, maxTtl);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return timeToLive(jwt, maxTtl);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwtDecoder");
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = hash(token);
+        Jwt jwt = cache.getIfPresent(key);
+        if (jwt == null) {
+            jwt = delegate.decode(token);
+            cache.put(key, jwt);
+        }
+        return jwt;
+    }
+
+    private static long timeToLive(Jwt jwt, Duration maxTtl) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null) {
+            return maxTtl.toNanos();
+        }
+        Duration remaining = Duration.between(Instant.now(), expiresAt);
+        if (remaining.isNegative()) {
+            return 0;
+        }
+        return Math.min(remaining.toNanos(), maxTtl.toNanos());
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
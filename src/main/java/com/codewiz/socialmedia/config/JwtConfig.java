@@ -2,6 +2,7 @@ package com.codewiz.socialmedia.config;
 
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.jwk.OctetSequenceKey;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
@@ -19,14 +20,24 @@ public class JwtConfig {
     @Value("${security.jwt.algorithm}")
     private String algorithm;
 
+    // Khoá và thuật toán chỉ dựng một lần sau khi inject cấu hình
+    private SecretKey key;
+    private JWSAlgorithm jwsAlgorithm;
+
+    @PostConstruct
+    void init() {
+        jwsAlgorithm = new JWSAlgorithm(algorithm);
+        key = new OctetSequenceKey.Builder(secretKey.getBytes())
+                .algorithm(jwsAlgorithm)
+                .build()
+                .toSecretKey();
+    }
+
     public SecretKey getSecretKey() {
-        var key =new OctetSequenceKey.Builder(secretKey.getBytes())
-                .algorithm(new JWSAlgorithm(algorithm))
-                .build();
-        return key.toSecretKey();
+        return key;
     }
 
     public JWSAlgorithm getAlgorithm() {
-        return new JWSAlgorithm(algorithm);
+        return jwsAlgorithm;
     }
 }
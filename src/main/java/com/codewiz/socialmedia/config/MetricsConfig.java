@@ -0,0 +1,44 @@
+package com.codewiz.socialmedia.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+// Mongo (mongodb.driver.commands) và repository (spring.data.repository.invocations) đã được Spring Boot Actuator
+// tự đo khi có Micrometer; ở đây chỉ bật histogram/percentile cho các timer cần xem độ trễ đuôi.
+// Xem qua /actuator/metrics/<tên> hoặc /actuator/prometheus.
+@Configuration
+public class MetricsConfig {
+
+    private static final Set<String> HISTOGRAM_METERS = Set.of(
+            "s3.client.requests", "s3.presign", "mongodb.driver.commands", "spring.data.repository.invocations");
+
+    @Bean
+    public MeterFilter latencyHistogramFilter() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!HISTOGRAM_METERS.contains(id.getName()) && !isApiRequest(id)) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .percentiles(0.5, 0.95, 0.99)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+
+    private static boolean isApiRequest(Meter.Id id) {
+        if (!"http.server.requests".equals(id.getName())) {
+            return false;
+        }
+        String uri = id.getTag("uri");
+        return uri != null && (uri.startsWith("/posts") || uri.startsWith("/user"));
+    }
+}
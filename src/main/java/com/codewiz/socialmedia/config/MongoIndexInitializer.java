@@ -0,0 +1,220 @@
+package com.codewiz.socialmedia.config;
+
+import com.codewiz.socialmedia.model.CreatorSyncTask;
+import com.codewiz.socialmedia.model.Follow;
+import com.codewiz.socialmedia.model.MediaPurgeKey;
+import com.codewiz.socialmedia.model.MediaPurgeRetry;
+import com.codewiz.socialmedia.model.Post;
+import com.codewiz.socialmedia.model.TrendingTagSnapshot;
+import com.codewiz.socialmedia.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+// Khai báo các index mà các truy vấn trong repository/service cần, kiểm tra khi khởi động
+// và báo cáo index nào thiếu hoặc khác định nghĩa. Index thiếu được tạo khi mongo.indexes.auto-create=true.
+@Slf4j
+@Component
+public class MongoIndexInitializer {
+
+    static final Map<Class<?>, List<IndexDefinition>> INDEXES = new LinkedHashMap<>();
+
+    static {
+        INDEXES.put(Post.class, List.of(
+                // bài viết theo tác giả (stream/cursor), deleteAllByCreator_Id, mới nhất trước
+                new Index().on("creator._id", Sort.Direction.ASC).on("createdAt", Sort.Direction.DESC)
+                        .named("creator_createdAt"),
+                // feed sắp theo createdAt và phân trang cursor (createdAt, _id)
+                new Index().on("createdAt", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                        .named("createdAt_id"),
+                // feed "hot" sắp theo điểm tính sẵn và phân trang cursor (hotScore, _id)
+                new Index().on("hotScore", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                        .named("hotScore_id"),
+                // một object S3 chỉ gắn vào một bài viết; partial để bỏ qua bài không có media (mediaUrl null/thiếu)
+                new Index().on("mediaUrl", Sort.Direction.ASC).unique()
+                        .partial(PartialIndexFilter.of(Criteria.where("mediaUrl").exists(true).type(2)))
+                        .named("mediaUrl_unique"),
+                // searchByText
+                TextIndexDefinition.builder().onField("title").onField("text").onField("tags")
+                        .named("post_text").build()));
+        INDEXES.put(User.class, List.of(
+                // findByEmail
+                new Index().on("email", Sort.Direction.ASC).unique().named("email_unique"),
+                // searchUsers sắp theo updatedAt
+                new Index().on("updatedAt", Sort.Direction.DESC).named("updatedAt"),
+                // searchUsers tìm theo tiền tố tên
+                new Index().on("nameLower", Sort.Direction.ASC).named("nameLower")));
+        INDEXES.put(Follow.class, List.of(
+                // mỗi cặp chỉ follow một lần, và tra danh sách đang theo dõi của một user
+                new Index().on("followerId", Sort.Direction.ASC).on("followeeId", Sort.Direction.ASC).unique()
+                        .named("follower_followee"),
+                // fan-out: duyệt các follower của một user
+                new Index().on("followeeId", Sort.Direction.ASC).on("followerId", Sort.Direction.ASC)
+                        .named("followee_follower")));
+        INDEXES.put(CreatorSyncTask.class, List.of(
+                // CreatorSyncService xử lý task cũ nhất trước
+                new Index().on("requestedAt", Sort.Direction.ASC).named("requestedAt")));
+        INDEXES.put(MediaPurgeKey.class, List.of(
+                // MediaPurgeService lấy từng lô key của một job
+                new Index().on("jobId", Sort.Direction.ASC).named("jobId")));
+        INDEXES.put(MediaPurgeRetry.class, List.of(
+                // MediaPurgeService.retryFailed lấy các key tới hạn thử lại
+                new Index().on("nextAttemptAt", Sort.Direction.ASC).named("nextAttemptAt")));
+        INDEXES.put(TrendingTagSnapshot.class, List.of(
+                // TrendingTagService: snapshot của instance không còn lưu nữa (đã tắt hẳn) tự bị xoá
+                new Index().on("savedAt", Sort.Direction.ASC).expire(Duration.ofDays(7)).named("savedAt_ttl")));
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean autoCreate;
+
+    public MongoIndexInitializer(MongoTemplate mongoTemplate,
+                                 @Value("${mongo.indexes.auto-create:true}") boolean autoCreate) {
+        this.mongoTemplate = mongoTemplate;
+        this.autoCreate = autoCreate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyIndexes() {
+        List<String> problems = new ArrayList<>();
+        INDEXES.forEach((entityClass, definitions) -> {
+            String collection = mongoTemplate.getCollectionName(entityClass);
+            try {
+                problems.addAll(verifyCollection(collection, definitions));
+            } catch (RuntimeException e) {
+                problems.add(collection + ": could not verify indexes (" + e.getMessage() + ")");
+            }
+        });
+
+        if (problems.isEmpty()) {
+            log.info("All required MongoDB indexes are present");
+        } else {
+            problems.forEach(problem -> log.warn("MongoDB index check: {}", problem));
+        }
+    }
+
+    private List<String> verifyCollection(String collection, List<IndexDefinition> definitions) {
+        List<String> problems = new ArrayList<>();
+        List<Document> existing = mongoTemplate.getCollection(collection).listIndexes().into(new ArrayList<>());
+
+        for (IndexDefinition definition : definitions) {
+            String name = definition.getIndexOptions().getString("name");
+            Document sameKeys = existing.stream().filter(index -> sameKeys(definition, index)).findFirst().orElse(null);
+            Document sameName = existing.stream().filter(index -> name.equals(index.getString("name"))).findFirst().orElse(null);
+
+            if (sameKeys != null) {
+                List<String> differences = optionDifferences(definition.getIndexOptions(), sameKeys);
+                if (!differences.isEmpty()) {
+                    problems.add(collection + "." + name + ": exists as '" + sameKeys.getString("name")
+                            + "' but " + String.join(", ", differences));
+                }
+            } else if (sameName != null) {
+                problems.add(collection + "." + name + ": keys differ, expected " + describe(definition)
+                        + " but found " + sameName.get("key") + sameName.get("weights", ""));
+            } else if (autoCreate) {
+                try {
+                    mongoTemplate.indexOps(collection).ensureIndex(definition);
+                    log.info("Created MongoDB index {}.{} {}", collection, name, describe(definition));
+                } catch (RuntimeException e) {
+                    problems.add(collection + "." + name + ": missing and could not be created (" + e.getMessage() + ")");
+                }
+            } else {
+                problems.add(collection + "." + name + ": missing, expected " + describe(definition));
+            }
+        }
+        return problems;
+    }
+
+    private static boolean sameKeys(IndexDefinition definition, Document index) {
+        if (definition instanceof TextIndexDefinition) {
+            Document weights = index.get("weights", Document.class);
+            return weights != null && weights.keySet().equals(definition.getIndexKeys().keySet());
+        }
+        Document key = index.get("key", Document.class);
+        return key != null && normalize(key).equals(normalize(definition.getIndexKeys()));
+    }
+
+    // Cùng key nhưng khác các tuỳ chọn này thì index khác nghĩa: unique là ràng buộc, sparse và partialFilterExpression
+    // đổi tập document được index (truy vấn có thể không dùng được index), expireAfterSeconds đổi lúc document bị xoá
+    private static List<String> optionDifferences(Document expected, Document actual) {
+        List<String> differences = new ArrayList<>();
+        for (String option : List.of("unique", "sparse")) {
+            boolean want = flag(expected.get(option));
+            boolean have = flag(actual.get(option));
+            if (want != have) {
+                differences.add(option + "=" + have + ", expected " + option + "=" + want);
+            }
+        }
+        Long wantTtl = seconds(expected.get("expireAfterSeconds"));
+        Long haveTtl = seconds(actual.get("expireAfterSeconds"));
+        if (!Objects.equals(wantTtl, haveTtl)) {
+            differences.add("expireAfterSeconds=" + haveTtl + ", expected expireAfterSeconds=" + wantTtl);
+        }
+        Object wantFilter = expected.get("partialFilterExpression");
+        Object haveFilter = actual.get("partialFilterExpression");
+        if (!Objects.equals(normalizeValue(wantFilter), normalizeValue(haveFilter))) {
+            differences.add("partialFilterExpression=" + json(haveFilter) + ", expected partialFilterExpression=" + json(wantFilter));
+        }
+        return differences;
+    }
+
+    private static boolean flag(Object value) {
+        return value instanceof Boolean bool ? bool : value instanceof Number number && number.intValue() != 0;
+    }
+
+    private static Long seconds(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    // Server có thể trả số dạng int/long/double và thứ tự field khác với lúc tạo
+    private static Object normalizeValue(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> normalized = new TreeMap<>();
+            map.forEach((key, nested) -> normalized.put(String.valueOf(key), normalizeValue(nested)));
+            return normalized;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(MongoIndexInitializer::normalizeValue).toList();
+        }
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        return value;
+    }
+
+    private static String json(Object filter) {
+        return filter instanceof Document document ? document.toJson() : String.valueOf(filter);
+    }
+
+    // Thứ tự field trong index kép có ý nghĩa nên so sánh theo danh sách; hướng 1/-1 có thể được lưu dạng int hoặc double
+    private static List<String> normalize(Document keys) {
+        return keys.entrySet().stream()
+                .map(entry -> entry.getKey() + ":" + (entry.getValue() instanceof Number number ? number.intValue() : entry.getValue()))
+                .toList();
+    }
+
+    private static String describe(IndexDefinition definition) {
+        if (definition instanceof TextIndexDefinition) {
+            return "text" + definition.getIndexKeys().keySet();
+        }
+        return definition.getIndexKeys().toJson();
+    }
+}
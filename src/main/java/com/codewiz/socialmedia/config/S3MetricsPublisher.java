@@ -0,0 +1,58 @@
+package com.codewiz.socialmedia.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+import java.time.Duration;
+import java.util.List;
+
+// Đo thời gian mọi request của S3Client (PutObject, DeleteObject(s), UploadPart, ...), tag theo operation và kết quả.
+// Gắn ở client nên mọi chỗ gọi S3 trong service đều được đo mà không cần sửa từng nơi.
+// Dùng số liệu ApiCallDuration mà SDK tự thu thập, không cần ExecutionAttribute riêng
+// (tên ExecutionAttribute phải duy nhất trong JVM, khai báo lại sau khi devtools restart sẽ lỗi).
+public class S3MetricsPublisher implements MetricPublisher {
+
+    private final MeterRegistry meterRegistry;
+
+    public S3MetricsPublisher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void publish(MetricCollection metrics) {
+        List<Duration> durations = metrics.metricValues(CoreMetric.API_CALL_DURATION);
+        if (durations.isEmpty()) {
+            return;
+        }
+        List<String> operations = metrics.metricValues(CoreMetric.OPERATION_NAME);
+        List<Boolean> successful = metrics.metricValues(CoreMetric.API_CALL_SUCCESSFUL);
+        boolean success = !successful.isEmpty() && successful.get(0);
+
+        Timer.builder("s3.client.requests")
+                .description("S3 client calls")
+                .tag("operation", operations.isEmpty() ? "unknown" : operations.get(0))
+                .tag("outcome", success ? "success" : "error")
+                .tag("exception", success ? "none" : errorType(metrics))
+                .register(meterRegistry)
+                .record(durations.get(0));
+    }
+
+    // Loại lỗi (Throttling, ServerError, IO, ...) của lần thử cuối cùng
+    private static String errorType(MetricCollection metrics) {
+        String errorType = "unknown";
+        for (MetricCollection attempt : metrics.children()) {
+            List<String> types = attempt.metricValues(CoreMetric.ERROR_TYPE);
+            if (!types.isEmpty()) {
+                errorType = types.get(0);
+            }
+        }
+        return errorType;
+    }
+
+    @Override
+    public void close() {
+    }
+}
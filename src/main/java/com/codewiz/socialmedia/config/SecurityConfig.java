@@ -1,10 +1,18 @@
 package com.codewiz.socialmedia.config;
 
 
+import com.codewiz.socialmedia.model.User;
 import com.codewiz.socialmedia.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.ProviderManager;
@@ -13,6 +21,7 @@ import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -20,12 +29,15 @@ import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.web.SecurityFilterChain;
 
+import java.time.Duration;
+
 @Configuration
 @AllArgsConstructor
 public class SecurityConfig {
 
     private final JwtConfig jwtConfig;
     private final UserRepository userRepository;
+    private final MongoTemplate mongoTemplate;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -41,26 +53,61 @@ public class SecurityConfig {
     }
 
     @Bean
-    public JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withSecretKey(jwtConfig.getSecretKey()).build();
+    public JwtDecoder jwtDecoder(
+            MeterRegistry meterRegistry,
+            @Value("${security.jwt.decoder-cache.enabled:false}") boolean cacheEnabled,
+            @Value("${security.jwt.decoder-cache.max-size:10000}") long cacheMaxSize,
+            @Value("${security.jwt.decoder-cache.max-ttl:1h}") Duration cacheMaxTtl
+    ) {
+        JwtDecoder decoder = NimbusJwtDecoder.withSecretKey(jwtConfig.getSecretKey()).build();
+        // Client gửi lại cùng một token trong suốt thời hạn của nó: cache kết quả để không parse và verify lại mỗi request
+        return cacheEnabled ? new CachingJwtDecoder(decoder, cacheMaxSize, cacheMaxTtl, meterRegistry) : decoder;
     }
 
 
+    // Cost của BCrypt cấu hình được; hash có cost khác sẽ được mã hoá lại khi đăng nhập thành công
+    @Bean
+    public BCryptPasswordEncoder passwordEncoder(@Value("${security.password.bcrypt-strength:10}") int strength) {
+        return new TunableBCryptPasswordEncoder(strength);
+    }
+
+    // Thread pool riêng cho BCrypt; hàng đợi có giới hạn, đầy thì từ chối (TaskRejectedException)
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public ThreadPoolTaskExecutor passwordHashingExecutor(
+            @Value("${security.password.hashing.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int threads,
+            @Value("${security.password.hashing.queue-capacity:100}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hashing-");
+        return executor;
     }
 
     @Bean
-    AuthenticationProvider authenticationProvider() {
+    AuthenticationProvider authenticationProvider(BCryptPasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
 
         authProvider.setUserDetailsService(userDetailsService());
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService());
 
         return authProvider;
     }
 
+    // Lưu hash mới khi DaoAuthenticationProvider mã hoá lại mật khẩu sau đăng nhập; chỉ cập nhật trường password
+    @Bean
+    UserDetailsPasswordService userDetailsPasswordService() {
+        return (userDetails, newPassword) -> {
+            User user = (User) userDetails;
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(user.getId())),
+                    Update.update("password", newPassword), User.class);
+            user.setPassword(newPassword);
+            return user;
+        };
+    }
+
     @Bean
     public AuthenticationManager authManager(AuthenticationProvider authenticationProvider) {
         return new ProviderManager(authenticationProvider);
@@ -0,0 +1,30 @@
+package com.codewiz.socialmedia.config;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// BCryptPasswordEncoder chỉ nâng cấp hash có cost thấp hơn cấu hình.
+// Lớp này coi mọi hash có cost khác cost mục tiêu là cần mã hoá lại, để có thể tăng hoặc giảm cost
+// và các hash được chuyển dần khi người dùng đăng nhập, không cần reset mật khẩu hàng loạt.
+public class TunableBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2([ayb])?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private final int strength;
+
+    public TunableBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        return matcher.matches() && Integer.parseInt(matcher.group(2)) != strength;
+    }
+}
@@ -0,0 +1,69 @@
+package com.codewiz.socialmedia.config;
+
+import com.codewiz.socialmedia.model.User;
+import com.codewiz.socialmedia.util.TextNormalizer;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+// Giữ trường nameLower luôn khớp với name mỗi khi User được lưu,
+// và bổ sung nameLower cho các user cũ lúc khởi động.
+@Slf4j
+@Component
+@AllArgsConstructor
+public class UserMongoEventListener extends AbstractMongoEventListener<User> {
+
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void onBeforeConvert(BeforeConvertEvent<User> event) {
+        User user = event.getSource();
+        user.setNameLower(TextNormalizer.normalize(user.getName()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillNameLower() {
+        Query query = new Query(Criteria.where("nameLower").exists(false).and("name").ne(null));
+        query.fields().include("name");
+        query.cursorBatchSize(BACKFILL_BATCH_SIZE);
+
+        long updated = 0;
+        try (Stream<User> users = mongoTemplate.stream(query, User.class)) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+            int batched = 0;
+            for (User user : (Iterable<User>) users::iterator) {
+                bulk.updateOne(Query.query(Criteria.where("id").is(user.getId())),
+                        Update.update("nameLower", TextNormalizer.normalize(user.getName())));
+                if (++batched == BACKFILL_BATCH_SIZE) {
+                    bulk.execute();
+                    updated += batched;
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+                    batched = 0;
+                }
+            }
+            if (batched > 0) {
+                bulk.execute();
+                updated += batched;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not backfill nameLower after {} users", updated, e);
+            return;
+        }
+        if (updated > 0) {
+            log.info("Backfilled nameLower for {} users", updated);
+        }
+    }
+}
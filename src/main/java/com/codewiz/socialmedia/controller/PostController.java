@@ -1,15 +1,29 @@
 package com.codewiz.socialmedia.controller;
 
+import com.codewiz.socialmedia.dto.CursorPage;
+import com.codewiz.socialmedia.dto.PostSummary;
+import com.codewiz.socialmedia.dto.PresignedUpload;
+import com.codewiz.socialmedia.dto.TrendingTag;
+import com.codewiz.socialmedia.dto.UploadRequest;
+import com.codewiz.socialmedia.model.ImageVariant;
+import com.codewiz.socialmedia.model.MediaPurgeJob;
 import com.codewiz.socialmedia.model.Post;
+import com.codewiz.socialmedia.model.TrendingWindow;
 import com.codewiz.socialmedia.service.PostService;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -19,28 +33,99 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class PostController {
 
+    // Client được giữ response nhưng phải hỏi lại (If-None-Match) trước khi dùng
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final PostService postService;
 
     @PostMapping
     public Post createPost(@RequestParam String title,
                            @RequestParam String text,
                            @RequestParam List<String> tags,
-                           @RequestParam(value = "mediaFile", required = false) MultipartFile mediaFile) throws IOException {
-        return postService.createPost(title, text, tags,mediaFile);
+                           @RequestParam(value = "mediaFile", required = false) MultipartFile mediaFile,
+                           @RequestParam(required = false) String mediaKey) throws IOException {
+        return postService.createPost(title, text, tags,mediaFile, mediaKey);
+    }
+
+    // Bước 1 của upload trực tiếp: trả về presigned PUT URL, client upload xong thì gửi mediaKey khi tạo/sửa bài
+    @PostMapping("/uploads")
+    public PresignedUpload createMediaUpload(@RequestBody UploadRequest request) {
+        return postService.createMediaUpload(request);
     }
 
+    // Có tham số cursor (kể cả rỗng cho trang đầu) thì phân trang theo cursor, ngược lại giữ kiểu page/size cũ.
+    // variant=THUMBNAIL|FEED: presign ảnh thu nhỏ thay cho ảnh gốc (nếu bài đã có)
+    // summary=true: trả PostSummary (text rút gọn, không tags), luôn phân trang theo cursor
+    // sort=hot: xếp theo điểm hot (like + độ mới) đã tính sẵn, luôn phân trang theo cursor
+    // Trả về ETag; If-None-Match khớp thì trả 304 mà không ký URL và không serialize trang
     @GetMapping
-    public Page<Post> getAllPosts(
+    public ResponseEntity<?> getAllPosts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "") String searchCriteria
+            @RequestParam(defaultValue = "") String searchCriteria,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) ImageVariant variant,
+            @RequestParam(defaultValue = "false") boolean summary,
+            @RequestParam(required = false) String sort,
+            WebRequest request
     ) {
-        return postService.getAllPosts(page, size,searchCriteria);
+        if ("hot".equals(sort)) {
+            CursorPage<Post> result = postService.findHotPostsAfter(cursor, size, searchCriteria);
+            if (request.checkNotModified(postService.etag(result.content(), variant, "hot", result.nextCursor()))) {
+                return null;
+            }
+            postService.generatePresignedUrls(result.content(), variant);
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(result);
+        }
+        if (summary) {
+            CursorPage<PostSummary> result = postService.findPostSummariesAfter(cursor, size, searchCriteria);
+            if (request.checkNotModified(postService.etag(result.content(), variant, "summary", result.nextCursor()))) {
+                return null;
+            }
+            postService.generateSummaryPresignedUrls(result.content(), variant);
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(result);
+        }
+        if (cursor != null) {
+            CursorPage<Post> result = postService.findPostsAfter(cursor, size, searchCriteria);
+            if (request.checkNotModified(postService.etag(result.content(), variant, result.nextCursor()))) {
+                return null;
+            }
+            postService.generatePresignedUrls(result.content(), variant);
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(result);
+        }
+        Page<Post> result = postService.findAllPosts(page, size,searchCriteria);
+        if (request.checkNotModified(postService.etag(result.getContent(), variant, page, size, result.getTotalElements()))) {
+            return null;
+        }
+        postService.generatePresignedUrls(result.getContent(), variant);
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(result);
+    }
+
+    // Home feed của người dùng hiện tại (bài của những người đang theo dõi), phân trang theo cursor
+    @GetMapping("/home")
+    public CursorPage<Post> getHomeTimeline(@RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "10") int size,
+                                            @RequestParam(required = false) ImageVariant variant) {
+        return postService.getHomeTimeline(cursor, size, variant);
+    }
+
+    // Tag được dùng nhiều nhất gần đây (window=HOUR|DAY|WEEK), đọc từ bộ đếm trong bộ nhớ
+    @GetMapping("/tags/trending")
+    public List<TrendingTag> getTrendingTags(@RequestParam(defaultValue = "DAY") TrendingWindow window,
+                                             @RequestParam(defaultValue = "10") int limit) {
+        return postService.getTrendingTags(window, limit);
     }
 
     @GetMapping("/{id}")
-    public Post getPostById(@PathVariable String id) {
-        return postService.getPostById(id);
+    public ResponseEntity<Post> getPostById(@PathVariable String id,
+                                            @RequestParam(required = false) ImageVariant variant,
+                                            WebRequest request) {
+        Post post = postService.findPostById(id);
+        if (request.checkNotModified(postService.etag(List.of(post), variant))) {
+            return null;
+        }
+        postService.generatePresignedUrls(List.of(post), variant);
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(post);
     }
 
     @PutMapping("/{id}")
@@ -48,13 +133,14 @@ public class PostController {
                            @RequestParam String title,
                            @RequestParam String text,
                            @RequestParam String tags, // <-- đổi kiểu
-                           @RequestParam(value = "mediaFile", required = false) MultipartFile mediaFile) throws IOException {
+                           @RequestParam(value = "mediaFile", required = false) MultipartFile mediaFile,
+                           @RequestParam(required = false) String mediaKey) throws IOException {
         List<String> tagList = Arrays.stream(tags.split(","))
                 .map(String::trim)
                 .filter(tag -> !tag.isEmpty())
                 .collect(Collectors.toList());
 
-        return postService.updatePost(id, title, text, tagList, mediaFile);
+        return postService.updatePost(id, title, text, tagList, mediaFile, mediaKey);
     }
 
 
@@ -68,11 +154,19 @@ public class PostController {
         postService.likePost(id);
     }
 
+    // Có cursor thì trả về từng trang; không có thì stream toàn bộ (NDJSON nếu client yêu cầu application/x-ndjson)
     @GetMapping("/creator/{creatorId}")
-    public ResponseEntity<List<Post>> getPostsByCreatorId(@PathVariable String creatorId) {
-        List<Post> posts = postService.getPostByCreatorId(creatorId);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByCreatorId(@PathVariable String creatorId,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "10") int size,
+                                                 @RequestParam(required = false) ImageVariant variant,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (cursor != null) {
+            return ResponseEntity.ok(postService.getPostsByCreatorAfter(creatorId, cursor, size, variant));
+        }
+        return streamPostsByCreator(creatorId, variant, accept);
     }
+
     @DeleteMapping("/creator/delete")
     public ResponseEntity<String> deleteAllPostByCreatorId(@RequestParam String creatorId){
         return ResponseEntity.ok(postService.deleteAllByCreatorId(creatorId));
@@ -80,24 +174,34 @@ public class PostController {
 
     // 🔍 Tìm kiếm toàn văn
     @GetMapping("/search")
-    public Page<Post> searchPosts(
+    public ResponseEntity<?> searchPosts(
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) ImageVariant variant
     ) {
-        return postService.searchPosts(keyword, page, size);
+        if (cursor != null) {
+            return ResponseEntity.ok(postService.searchPostsAfter(keyword, cursor, size, variant));
+        }
+        return ResponseEntity.ok(postService.searchPosts(keyword, page, size, variant));
     }
 
     // 🧑‍💻 Lấy bài viết theo người dùng
     @GetMapping("/user/{userId}")
-    public List<Post> getUserPosts(@PathVariable String userId) {
-        return postService.getPostByCreatorId(userId);
+    public ResponseEntity<?> getUserPosts(@PathVariable String userId,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "10") int size,
+                                          @RequestParam(required = false) ImageVariant variant,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return getPostsByCreatorId(userId, cursor, size, variant, accept);
     }
 
     // 🗑️ Xóa toàn bộ bài viết của người dùng
     @DeleteMapping("/user/{userId}")
-    public void deleteAllPostsByUser(@PathVariable String userId) {
-        postService.deleteAllPostsByUser(userId);
+    public ResponseEntity<MediaPurgeJob> deleteAllPostsByUser(@PathVariable String userId) {
+        MediaPurgeJob job = postService.deleteAllPostsByUser(userId);
+        return ResponseEntity.accepted().location(URI.create("/user/purge-jobs/" + job.getId())).body(job);
     }
 
     // ✅ Kiểm tra quyền sở hữu bài viết
@@ -106,4 +210,11 @@ public class PostController {
         return postService.isUserOwnerOfPost(postId, userId);
     }
 
+    private ResponseEntity<StreamingResponseBody> streamPostsByCreator(String creatorId, ImageVariant variant, String accept) {
+        boolean ndjson = accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+        StreamingResponseBody body = out -> postService.streamPostsByCreator(creatorId, out, ndjson, variant);
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
 }
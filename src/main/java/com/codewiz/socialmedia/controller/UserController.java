@@ -1,8 +1,12 @@
 package com.codewiz.socialmedia.controller;
 
 
+import com.codewiz.socialmedia.dto.PresignedUpload;
+import com.codewiz.socialmedia.dto.UploadRequest;
 import com.codewiz.socialmedia.dto.UserResponse;
+import com.codewiz.socialmedia.dto.UserSuggestion;
 import com.codewiz.socialmedia.model.*;
+import com.codewiz.socialmedia.service.FollowService;
 import com.codewiz.socialmedia.service.UserService;
 import lombok.AllArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -10,7 +14,9 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/user")
@@ -19,6 +25,8 @@ public class UserController {
 
     private final UserService userService;
 
+    private final FollowService followService;
+
     @PostMapping("/signup")
     public ResponseEntity<User> register(
             @RequestParam String name,
@@ -45,9 +53,8 @@ public class UserController {
 
 
     @PostMapping("/signin")
-    public ResponseEntity<LoginResponse> authenticate(@RequestBody LoginDto loginUserDto) {
-        var loginResponse = userService.authenticate(loginUserDto);
-        return ResponseEntity.ok(loginResponse);
+    public CompletableFuture<ResponseEntity<LoginResponse>> authenticate(@RequestBody LoginDto loginUserDto) {
+        return userService.authenticate(loginUserDto).thenApply(ResponseEntity::ok);
     }
 
 
@@ -82,14 +89,24 @@ public class UserController {
             @RequestParam(required = false) String city,
             @RequestParam(required = false) List<String> otherWebsites,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean prefix
     ) {
         UserSearchCriteria criteria = new UserSearchCriteria(
-                name, email, gender, dateOfBirth, country, stateOrProvince, city, otherWebsites, page, size
+                name, email, gender, country, stateOrProvince, city, dateOfBirth, otherWebsites, page, size, prefix
         );
         return ResponseEntity.ok(userService.searchUsers(criteria));
     }
 
+    // Gợi ý tên người dùng khi gõ, phục vụ từ index trong bộ nhớ
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<UserSuggestion>> autocomplete(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(userService.autocomplete(q, limit));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<User> updateUser(
             @PathVariable String id,
@@ -116,8 +133,37 @@ public class UserController {
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable String id) {
-        userService.deleteUser(id);
+    public ResponseEntity<MediaPurgeJob> deleteUser(@PathVariable String id) {
+        // Media được xoá ở background; Location trỏ tới trạng thái của job
+        MediaPurgeJob job = userService.deleteUser(id);
+        return ResponseEntity.accepted().location(URI.create("/user/purge-jobs/" + job.getId())).body(job);
+    }
+
+    @PostMapping("/{id}/follow")
+    public ResponseEntity<Void> follow(@PathVariable String id) {
+        followService.follow(id);
         return ResponseEntity.noContent().build();
     }
+
+    @DeleteMapping("/{id}/follow")
+    public ResponseEntity<Void> unfollow(@PathVariable String id) {
+        followService.unfollow(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Upload ảnh đại diện thẳng lên S3: xin URL, PUT file, rồi gửi lại key
+    @PostMapping("/profile-photo/uploads")
+    public ResponseEntity<PresignedUpload> createProfilePhotoUpload(@RequestBody UploadRequest request) {
+        return ResponseEntity.ok(userService.createProfilePhotoUpload(request));
+    }
+
+    @PutMapping("/profile-photo")
+    public ResponseEntity<UserResponse> setProfilePhoto(@RequestParam String key) {
+        return ResponseEntity.ok(userService.setProfilePhoto(key));
+    }
+
+    @GetMapping("/purge-jobs/{jobId}")
+    public ResponseEntity<MediaPurgeJob> getPurgeJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(userService.getPurgeJob(jobId));
+    }
 }
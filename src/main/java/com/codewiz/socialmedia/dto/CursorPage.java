@@ -0,0 +1,7 @@
+package com.codewiz.socialmedia.dto;
+
+import java.util.List;
+
+// Trang kết quả phân trang theo cursor: không có tổng số phần tử, nextCursor = null khi đã hết dữ liệu
+public record CursorPage<T>(List<T> content, int size, String nextCursor) {
+}
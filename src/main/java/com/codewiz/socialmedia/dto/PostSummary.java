@@ -0,0 +1,31 @@
+package com.codewiz.socialmedia.dto;
+
+import com.codewiz.socialmedia.model.MediaType;
+import com.codewiz.socialmedia.model.PostCreator;
+import com.codewiz.socialmedia.model.PostRevision;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// Bản rút gọn của Post cho danh sách/feed: chỉ các trường được project từ Mongo, text cắt thành preview,
+// không có tags. mediaUrl/variants chỉ dùng để ký URL, không trả về client.
+@Data
+public class PostSummary implements PostRevision {
+    private String id;
+    private String title;
+    private String preview;
+    private boolean truncated;
+    private MediaType mediaType;
+    @JsonIgnore
+    private String mediaUrl;
+    @JsonIgnore
+    private Map<String, String> variants;
+    private String presignedUrl;
+    private LocalDateTime createdAt;
+    private long likes;
+    @JsonIgnore
+    private long version;
+    private PostCreator creator;
+}
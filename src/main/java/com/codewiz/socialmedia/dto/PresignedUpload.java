@@ -0,0 +1,8 @@
+package com.codewiz.socialmedia.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+// URL để client PUT file thẳng lên S3 kèm các header bắt buộc; sau khi upload xong gửi lại key khi tạo bài viết/ảnh đại diện
+public record PresignedUpload(String key, String url, String method, Map<String, String> headers, Instant expiresAt) {
+}
@@ -0,0 +1,5 @@
+package com.codewiz.socialmedia.dto;
+
+// score: số lượt dùng tag đã giảm trọng số theo thời gian (ước lượng, có thể cao hơn thực tế một chút)
+public record TrendingTag(String tag, double score) {
+}
@@ -0,0 +1,5 @@
+package com.codewiz.socialmedia.dto;
+
+// Thông tin file client sắp upload thẳng lên S3; contentType và size được ký vào URL nên client phải gửi đúng như khai báo
+public record UploadRequest(String fileName, String contentType, long size) {
+}
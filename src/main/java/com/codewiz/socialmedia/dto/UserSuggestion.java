@@ -0,0 +1,4 @@
+package com.codewiz.socialmedia.dto;
+
+public record UserSuggestion(String id, String name) {
+}
@@ -0,0 +1,11 @@
+package com.codewiz.socialmedia.dto;
+
+import lombok.Data;
+
+// Kết quả tìm kiếm user: chỉ id, tên và ảnh đại diện (key S3 khi đọc từ Mongo, presigned URL khi trả về)
+@Data
+public class UserSummary {
+    private String id;
+    private String name;
+    private String profilePhoto;
+}
@@ -0,0 +1,19 @@
+package com.codewiz.socialmedia.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// Yêu cầu cập nhật bản sao PostCreator trong các bài viết của một user (_id = userId).
+// Giá trị mới được đọc từ users khi task chạy; userUpdatedAt là updatedAt của user lúc đổi tên.
+// Task bị xoá khi không còn bài nào mang giá trị cũ.
+@Data
+@Document("creator_sync_task")
+public class CreatorSyncTask {
+    @Id
+    private String userId;
+    private LocalDateTime userUpdatedAt;
+    private LocalDateTime requestedAt;
+}
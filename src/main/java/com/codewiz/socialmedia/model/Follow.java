@@ -0,0 +1,18 @@
+package com.codewiz.socialmedia.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// followerId theo dõi followeeId
+@Data
+@Document("follow")
+public class Follow {
+    @Id
+    private String id;
+    private String followerId;
+    private String followeeId;
+    private LocalDateTime createdAt;
+}
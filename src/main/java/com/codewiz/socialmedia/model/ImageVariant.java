@@ -0,0 +1,18 @@
+package com.codewiz.socialmedia.model;
+
+import lombok.Getter;
+
+// Các bản thu nhỏ được tạo cho ảnh của bài viết; chỉ tạo khi ảnh gốc rộng hơn maxWidth
+@Getter
+public enum ImageVariant {
+    THUMBNAIL("thumb", 320),
+    FEED("feed", 1080);
+
+    private final String keySuffix;
+    private final int maxWidth;
+
+    ImageVariant(String keySuffix, int maxWidth) {
+        this.keySuffix = keySuffix;
+        this.maxWidth = maxWidth;
+    }
+}
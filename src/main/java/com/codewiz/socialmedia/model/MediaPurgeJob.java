@@ -0,0 +1,37 @@
+package com.codewiz.socialmedia.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// Một lần xoá toàn bộ bài viết của user (khi xoá user hoặc xoá mọi bài viết) và dọn media của chúng trên S3.
+// Job duyệt và xoá bài viết theo từng lô, ghi key media vào media_purge_key (MediaPurgeKey), rồi xoá các key
+// đó theo từng lô; tiến độ nằm trong DB nên job chạy tiếp được sau khi khởi động lại.
+@Data
+@Document("media_purge_job")
+public class MediaPurgeJob {
+    @Id
+    private String id;
+    private String userId;
+    private Status status;
+    private int totalKeys;
+    private int deletedKeys;
+    private int failedKeys;
+    // Đã xoá hết bài viết và ghi đủ key của chúng; totalKeys tăng dần cho tới lúc đó
+    @JsonIgnore
+    private boolean postsCollected;
+    // Instance đang chạy job và hạn lease của nó (MediaPurgeService.claim)
+    @JsonIgnore
+    private String owner;
+    @JsonIgnore
+    private LocalDateTime leaseUntil;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public enum Status {
+        PENDING, RUNNING, COMPLETED
+    }
+}
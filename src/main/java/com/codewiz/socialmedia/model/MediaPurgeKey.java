@@ -0,0 +1,17 @@
+package com.codewiz.socialmedia.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Một key S3 còn phải xoá của MediaPurgeJob. Mỗi key một document: job lớn không chạm giới hạn 16MB của một
+// document, và mỗi lô chỉ xoá đúng các document của lô đó.
+@Data
+@Document("media_purge_key")
+public class MediaPurgeKey {
+    // jobId:key, để ghi lại cùng key khi job chạy lại không tạo bản trùng
+    @Id
+    private String id;
+    private String jobId;
+    private String key;
+}
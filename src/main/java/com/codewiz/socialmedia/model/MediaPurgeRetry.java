@@ -0,0 +1,19 @@
+package com.codewiz.socialmedia.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// Key S3 xoá không thành công, được thử lại định kỳ với backoff cho tới khi xoá được hoặc hết số lần thử
+@Data
+@Document("media_purge_retry")
+public class MediaPurgeRetry {
+    @Id
+    private String key;
+    private String jobId;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime nextAttemptAt;
+}
@@ -1,6 +1,7 @@
 package com.codewiz.socialmedia.model;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
@@ -8,11 +9,14 @@ import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Document("post")
-public class Post {
+public class Post implements PostRevision {
     @Id
     private String id;
     private String title;
@@ -20,12 +24,46 @@ public class Post {
     private List<String> tags;
     private String mediaUrl;
     private MediaType mediaType;
+    // Tên ImageVariant -> key S3 của ảnh thu nhỏ
+    private Map<String, String> variants;
     private LocalDateTime createdAt;
     private long likes;
+    // Thứ tự của feed "hot", xem HotScore
+    private double hotScore;
+    // Tăng mỗi khi nội dung bài viết đổi (trừ likes), dùng để tính ETag
+    private long version;
     private PostCreator creator;
     @Transient
     private String presignedUrl;
     @Transient
     private boolean owner;
+    // Đoạn trích được highlight theo field (title, text), chỉ có trong kết quả tìm kiếm
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, String> highlights;
 
+    // Bản sao độc lập (kể cả creator và tags) để bản trong cache không bị sửa theo
+    public Post copy() {
+        Post copy = new Post();
+        copy.setId(id);
+        copy.setTitle(title);
+        copy.setText(text);
+        copy.setTags(tags == null ? null : new ArrayList<>(tags));
+        copy.setMediaUrl(mediaUrl);
+        copy.setMediaType(mediaType);
+        copy.setVariants(variants == null ? null : new HashMap<>(variants));
+        copy.setCreatedAt(createdAt);
+        copy.setLikes(likes);
+        copy.setHotScore(hotScore);
+        copy.setVersion(version);
+        copy.setCreator(creator == null ? null : PostCreator.builder()
+                .id(creator.getId())
+                .name(creator.getName())
+                .profilePhoto(creator.getProfilePhoto())
+                .build());
+        copy.setPresignedUrl(presignedUrl);
+        copy.setOwner(owner);
+        copy.setHighlights(highlights == null ? null : new HashMap<>(highlights));
+        return copy;
+    }
 }
@@ -0,0 +1,11 @@
+package com.codewiz.socialmedia.model;
+
+// Những gì quyết định một bài viết đã thay đổi hay chưa (dùng để tính ETag), chung cho Post và PostSummary
+public interface PostRevision {
+
+    String getId();
+
+    long getVersion();
+
+    long getLikes();
+}
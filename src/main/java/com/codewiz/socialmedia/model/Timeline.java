@@ -0,0 +1,22 @@
+package com.codewiz.socialmedia.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+import java.util.Set;
+
+// Home timeline dựng sẵn của một user (_id = userId): các bài viết mới nhất của những người user theo dõi,
+// được đẩy vào khi bài viết được tạo và giới hạn số phần tử.
+// Bài viết của tài khoản celebrity không được đẩy vào mà được đọc trực tiếp lúc xem feed.
+@Data
+@Document("timeline")
+public class Timeline {
+    @Id
+    private String userId;
+    // Sắp theo createdAt giảm dần
+    private List<TimelineEntry> entries;
+    // Các celebrity mà user đang theo dõi
+    private Set<String> celebrities;
+}
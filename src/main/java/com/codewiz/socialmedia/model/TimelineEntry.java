@@ -0,0 +1,16 @@
+package com.codewiz.socialmedia.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimelineEntry {
+    private String postId;
+    private String creatorId;
+    private LocalDateTime createdAt;
+}
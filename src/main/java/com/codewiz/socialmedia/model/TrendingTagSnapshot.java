@@ -0,0 +1,32 @@
+package com.codewiz.socialmedia.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+
+// Trạng thái của một cửa sổ trending tags trên một instance (_id = "<TrendingWindow>:<instance>"), lưu định kỳ.
+// closed = instance đã tắt; snapshot đó (hoặc snapshot lâu không được lưu) được instance khác cộng vào rồi xoá.
+// TTL index trên savedAt chỉ dọn phần không còn instance nào nhận.
+// counts là count-min sketch trải phẳng (depth * width); trọng số tính theo mốc landmark (epoch millis).
+@Data
+@Document("trending_tag_snapshot")
+public class TrendingTagSnapshot {
+    @Id
+    private String id;
+    private String window;
+    private String instance;
+    private Date savedAt;
+    private boolean closed;
+    private long landmark;
+    private int depth;
+    private int width;
+    private double[] counts;
+    // Tag là giá trị tự do (có thể chứa '.') nên không dùng làm key của Map
+    private List<Candidate> candidates;
+
+    public record Candidate(String tag, double weight) {
+    }
+}
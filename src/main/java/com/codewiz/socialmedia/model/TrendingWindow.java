@@ -0,0 +1,19 @@
+package com.codewiz.socialmedia.model;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+// Cửa sổ của trending tags: mỗi lượt dùng tag giảm trọng số theo hàm mũ với hằng số thời gian decay
+@Getter
+public enum TrendingWindow {
+    HOUR(Duration.ofHours(1)),
+    DAY(Duration.ofDays(1)),
+    WEEK(Duration.ofDays(7));
+
+    private final Duration decay;
+
+    TrendingWindow(Duration decay) {
+        this.decay = decay;
+    }
+}
@@ -1,5 +1,6 @@
 package com.codewiz.socialmedia.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
@@ -19,6 +20,9 @@ public class User implements UserDetails {
     @Id
     private String id;
     private String name;
+    // Tên đã chuẩn hoá (không dấu, chữ thường), được cập nhật tự động trước khi lưu để tìm theo tiền tố có index
+    @JsonIgnore
+    private String nameLower;
     private String email;
     private String password;
     private String profilePhoto;
@@ -27,6 +31,13 @@ public class User implements UserDetails {
     private List<String> otherWebsites;
     private Address address;
     private List<String> roles;
+    private long followerCount;
+    private long followingCount;
+    // Đánh dấu khi số người theo dõi vượt ngưỡng: bài viết không được fan-out mà được đọc lúc xem feed
+    private boolean celebrity;
+    // Lúc bắt đầu chuyển sang celebrity (TimelineService.promoteToCelebrity); null khi không có lượt chuyển nào
+    @JsonIgnore
+    private LocalDateTime celebrityPromotionStartedAt;
 
     @LastModifiedDate
     private LocalDateTime updatedAt;
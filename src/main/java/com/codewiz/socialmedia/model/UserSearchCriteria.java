@@ -20,4 +20,5 @@ public class UserSearchCriteria{
     private List<String> otherWebsites;
     private int page;
     private int size;
+    private boolean namePrefix; // true: tìm theo tiền tố tên (không dấu, không phân biệt hoa thường), dùng được index
 }
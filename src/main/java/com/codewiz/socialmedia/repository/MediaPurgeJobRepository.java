@@ -0,0 +1,9 @@
+package com.codewiz.socialmedia.repository;
+
+import com.codewiz.socialmedia.model.MediaPurgeJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MediaPurgeJobRepository extends MongoRepository<MediaPurgeJob, String> {
+}
@@ -5,11 +5,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
-import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-
 @Repository
 public interface PostRepository extends MongoRepository<Post, String> {
 
@@ -18,12 +15,6 @@ public interface PostRepository extends MongoRepository<Post, String> {
     @Query("{ '$text': { '$search': ?0 } }")
     Page<Post> searchByText(String searchTerm, Pageable pageable);
 
-    @Query("{ '_id': ?0 }")
-    @Update("{ '$inc': { 'likes': 1 } }")
-    void incrementLikes(String postId);
-
-    List<Post> findByCreator_Id(String creatorId);
-
     void deleteAllByCreator_Id(String creatorId);
 
 
@@ -0,0 +1,109 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.model.CreatorSyncTask;
+import com.codewiz.socialmedia.model.Post;
+import com.codewiz.socialmedia.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Đồng bộ dần tên tác giả được nhúng trong Post.creator sau khi user đổi thông tin,
+// để feed tiếp tục đọc dữ liệu denormalized mà không cần join.
+// Mỗi lần chạy cập nhật tối đa creator-sync.max-batches-per-run lô, mỗi lô creator-sync.batch-size bài (throttle);
+// điều kiện "tên còn khác" giúp job tự chạy tiếp từ chỗ dừng sau khi khởi động lại hoặc gặp lỗi.
+@Slf4j
+@Service
+public class CreatorSyncService {
+
+    private final MongoTemplate mongoTemplate;
+    private final PostCache postCache;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    public CreatorSyncService(MongoTemplate mongoTemplate,
+                              PostCache postCache,
+                              @Value("${creator-sync.batch-size:1000}") int batchSize,
+                              @Value("${creator-sync.max-batches-per-run:10}") int maxBatchesPerRun) {
+        this.mongoTemplate = mongoTemplate;
+        this.postCache = postCache;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    // Task chỉ ghi user nào cần đồng bộ và updatedAt của bản user đã yêu cầu; tên được đọc từ users lúc chạy
+    // chứ không lấy từ request, để một JWT cũ (còn tên cũ) không thể ghi đè tên mới lên bài viết
+    public void schedule(String userId, LocalDateTime userUpdatedAt) {
+        mongoTemplate.upsert(Query.query(Criteria.where("userId").is(userId)),
+                new Update().set("userUpdatedAt", userUpdatedAt).set("requestedAt", LocalDateTime.now()).unset("name"),
+                CreatorSyncTask.class);
+    }
+
+    @Scheduled(fixedDelayString = "${creator-sync.interval-ms:2000}")
+    public void run() {
+        int budget = maxBatchesPerRun;
+        try {
+            List<CreatorSyncTask> tasks = mongoTemplate.find(new Query()
+                    .with(Sort.by(Sort.Direction.ASC, "requestedAt")).limit(maxBatchesPerRun), CreatorSyncTask.class);
+            for (CreatorSyncTask task : tasks) {
+                if (budget == 0) {
+                    return;
+                }
+                budget -= sync(task, budget);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Creator sync run failed, it will resume on the next run", e);
+        }
+    }
+
+    // Trả về số lô đã dùng
+    private int sync(CreatorSyncTask task, int budget) {
+        Query userQuery = Query.query(Criteria.where("id").is(task.getUserId()));
+        userQuery.fields().include("name", "updatedAt");
+        User user = mongoTemplate.findOne(userQuery, User.class);
+        if (user == null) {
+            // User đã bị xoá cùng các bài viết
+            removeTask(task);
+            return 1;
+        }
+        if (task.getUserUpdatedAt() != null
+                && (user.getUpdatedAt() == null || user.getUpdatedAt().isBefore(task.getUserUpdatedAt()))) {
+            // Bản user đọc được cũ hơn lần đổi tên đã yêu cầu task: để lần chạy sau
+            return 1;
+        }
+        String name = user.getName();
+        Criteria stale = Criteria.where("creator._id").is(task.getUserId()).and("creator.name").ne(name);
+        int batches = 0;
+        while (batches < budget) {
+            Query query = Query.query(stale).limit(batchSize);
+            query.fields().include("_id");
+            List<String> ids = mongoTemplate.find(query, Post.class).stream().map(Post::getId).toList();
+            if (ids.isEmpty()) {
+                removeTask(task);
+                break;
+            }
+            mongoTemplate.updateMulti(Query.query(Criteria.where("id").in(ids).and("creator._id").is(task.getUserId())),
+                    Update.update("creator.name", name).inc("version", 1), Post.class);
+            batches++;
+        }
+        if (batches > 0) {
+            postCache.invalidateByCreator(task.getUserId());
+            log.debug("Updated creator name on up to {} posts of user {}", batches * batchSize, task.getUserId());
+        }
+        return Math.max(batches, 1);
+    }
+
+    // Chỉ xoá nếu task chưa bị ghi đè bởi một lần đổi tên mới hơn
+    private void removeTask(CreatorSyncTask task) {
+        mongoTemplate.remove(Query.query(Criteria.where("userId").is(task.getUserId())
+                .and("requestedAt").is(task.getRequestedAt())), CreatorSyncTask.class);
+    }
+}
@@ -0,0 +1,108 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.config.AWSConfig;
+import com.codewiz.socialmedia.dto.PresignedUpload;
+import com.codewiz.socialmedia.dto.UploadRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.util.UUID;
+
+// Upload hai bước: client xin presigned PUT URL, upload thẳng lên S3 (không đi qua JVM), rồi gửi lại key.
+// Key luôn nằm dưới uploads/<userId>/ để kiểm tra quyền sở hữu; trước khi dùng, object được kiểm tra bằng HEAD
+// (tồn tại, content type, kích thước).
+@Service
+public class DirectUploadService {
+
+    private static final String UPLOAD_PREFIX = "uploads/";
+    private static final int MAX_FILE_NAME_LENGTH = 100;
+
+    private final S3Client s3Client;
+    private final S3PresignedUrlService s3PresignedUrlService;
+    private final long maxMediaSize;
+    private final long maxProfilePhotoSize;
+
+    public DirectUploadService(S3Client s3Client,
+                               S3PresignedUrlService s3PresignedUrlService,
+                               @Value("${media.upload.max-size:104857600}") long maxMediaSize,
+                               @Value("${media.upload.profile-photo-max-size:10485760}") long maxProfilePhotoSize) {
+        this.s3Client = s3Client;
+        this.s3PresignedUrlService = s3PresignedUrlService;
+        this.maxMediaSize = maxMediaSize;
+        this.maxProfilePhotoSize = maxProfilePhotoSize;
+    }
+
+    public PresignedUpload createPostUpload(String userId, UploadRequest request) {
+        requireAllowed(request.contentType(), request.size(), maxMediaSize, "image/", "video/");
+        return s3PresignedUrlService.presignUpload(newKey(userId, request.fileName()), request.contentType(), request.size());
+    }
+
+    public PresignedUpload createProfilePhotoUpload(String userId, UploadRequest request) {
+        requireAllowed(request.contentType(), request.size(), maxProfilePhotoSize, "image/");
+        return s3PresignedUrlService.presignUpload(newKey(userId, request.fileName()), request.contentType(), request.size());
+    }
+
+    public HeadObjectResponse verifyPostUpload(String userId, String key) {
+        return verify(userId, key, maxMediaSize, "image/", "video/");
+    }
+
+    // Ảnh đại diện luôn nằm ở key cố định <userId>-profile: copy trong S3 sang đó rồi xoá bản upload tạm
+    public void promoteProfilePhoto(String userId, String key, String targetKey) {
+        verify(userId, key, maxProfilePhotoSize, "image/");
+        s3Client.copyObject(builder -> builder
+                .sourceBucket(AWSConfig.BUCKET_NAME)
+                .sourceKey(key)
+                .destinationBucket(AWSConfig.BUCKET_NAME)
+                .destinationKey(targetKey));
+        s3Client.deleteObject(builder -> builder.bucket(AWSConfig.BUCKET_NAME).key(key));
+    }
+
+    private HeadObjectResponse verify(String userId, String key, long maxSize, String... allowedTypes) {
+        if (key == null || !key.startsWith(UPLOAD_PREFIX + userId + "/")) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Upload does not belong to the current user");
+        }
+        HeadObjectResponse head;
+        try {
+            head = s3Client.headObject(builder -> builder.bucket(AWSConfig.BUCKET_NAME).key(key));
+        } catch (NoSuchKeyException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Uploaded object not found");
+        } catch (S3Exception e) {
+            if (e.statusCode() == HttpStatus.NOT_FOUND.value()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Uploaded object not found");
+            }
+            throw e;
+        }
+        requireAllowed(head.contentType(), head.contentLength(), maxSize, allowedTypes);
+        return head;
+    }
+
+    private static void requireAllowed(String contentType, Long size, long maxSize, String... allowedTypes) {
+        boolean allowedType = false;
+        for (String allowed : allowedTypes) {
+            allowedType |= contentType != null && contentType.startsWith(allowed);
+        }
+        if (!allowedType) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported content type: " + contentType);
+        }
+        if (size == null || size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File size is required");
+        }
+        if (size > maxSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "File is larger than " + maxSize + " bytes");
+        }
+    }
+
+    private static String newKey(String userId, String fileName) {
+        String safeName = fileName == null ? "file" : fileName.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (safeName.length() > MAX_FILE_NAME_LENGTH) {
+            safeName = safeName.substring(safeName.length() - MAX_FILE_NAME_LENGTH);
+        }
+        return UPLOAD_PREFIX + userId + "/" + UUID.randomUUID() + "-" + safeName;
+    }
+}
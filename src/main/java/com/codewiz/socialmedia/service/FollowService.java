@@ -0,0 +1,114 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.model.Follow;
+import com.codewiz.socialmedia.model.User;
+import com.mongodb.client.result.DeleteResult;
+import lombok.AllArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+@AllArgsConstructor
+public class FollowService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final TimelineService timelineService;
+
+    public void follow(String followeeId) {
+        String followerId = currentUserId();
+        if (followerId.equals(followeeId)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "You cannot follow yourself");
+        }
+        if (!mongoTemplate.exists(Query.query(Criteria.where("id").is(followeeId)), User.class)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        }
+
+        Follow follow = new Follow();
+        follow.setFollowerId(followerId);
+        follow.setFolloweeId(followeeId);
+        follow.setCreatedAt(LocalDateTime.now());
+        try {
+            mongoTemplate.insert(follow);
+        } catch (DuplicateKeyException e) {
+            // Đã theo dõi rồi
+            return;
+        }
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(followerId)),
+                new Update().inc("followingCount", 1), User.class);
+        User followee = mongoTemplate.findAndModify(Query.query(Criteria.where("id").is(followeeId)),
+                new Update().inc("followerCount", 1), FindAndModifyOptions.options().returnNew(true), User.class);
+        if (followee != null) {
+            timelineService.onFollow(followerId, followee);
+        }
+    }
+
+    public void unfollow(String followeeId) {
+        String followerId = currentUserId();
+        DeleteResult result = mongoTemplate.remove(Query.query(
+                Criteria.where("followerId").is(followerId).and("followeeId").is(followeeId)), Follow.class);
+        if (result.getDeletedCount() == 0) {
+            return;
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(followerId)),
+                new Update().inc("followingCount", -1), User.class);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(followeeId)),
+                new Update().inc("followerCount", -1), User.class);
+        timelineService.onUnfollow(followerId, followeeId);
+    }
+
+    // Khi xoá user: gỡ mọi quan hệ follow của user đó, cập nhật bộ đếm của phía còn lại, gỡ user khỏi timeline
+    // của các follower và xoá timeline của user
+    public void deleteAllFor(String userId) {
+        adjustCounts("followerId", userId, "followeeId", "followerCount");
+        adjustCounts("followeeId", userId, "followerId", "followingCount");
+        timelineService.deleteAllFor(userId);
+        mongoTemplate.remove(Query.query(new Criteria().orOperator(
+                Criteria.where("followerId").is(userId), Criteria.where("followeeId").is(userId))), Follow.class);
+    }
+
+    private void adjustCounts(String matchField, String userId, String otherField, String counter) {
+        Query query = Query.query(Criteria.where(matchField).is(userId));
+        query.fields().include(otherField);
+        query.cursorBatchSize(BATCH_SIZE);
+
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<Follow> follows = mongoTemplate.stream(query, Follow.class)) {
+            follows.forEach(follow -> {
+                batch.add("followerId".equals(otherField) ? follow.getFollowerId() : follow.getFolloweeId());
+                if (batch.size() == BATCH_SIZE) {
+                    decrement(batch, counter);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            decrement(batch, counter);
+        }
+    }
+
+    private void decrement(List<String> userIds, String counter) {
+        mongoTemplate.updateMulti(Query.query(Criteria.where("id").in(userIds)), new Update().inc(counter, -1), User.class);
+    }
+
+    private static String currentUserId() {
+        var auth = (JwtAuthenticationToken) SecurityContextHolder.getContext().getAuthentication();
+        return (String) auth.getToken().getClaims().get("id");
+    }
+}
@@ -0,0 +1,31 @@
+package com.codewiz.socialmedia.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Vị trí của bài viết cuối cùng trong trang theo thứ tự (hotScore DESC, _id DESC), mã hoá như PostCursor
+record HotPostCursor(double hotScore, String id) {
+
+    private static final String SEPARATOR = "|";
+
+    String encode() {
+        String raw = hotScore + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static HotPostCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Missing separator");
+            }
+            return new HotPostCursor(Double.parseDouble(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+        }
+    }
+}
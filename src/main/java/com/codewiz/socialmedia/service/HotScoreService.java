@@ -0,0 +1,109 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.model.Post;
+import com.codewiz.socialmedia.util.HotScore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Giữ Post.hotScore (xem HotScore) đồng bộ với số like:
+// - mỗi lượt like ghi trực tiếp: tính lại ngay từ document trả về sau $inc
+// - like được gom bởi LikeCounterBuffer: tính lại cho các bài trong lần flush
+// - quét định kỳ các bài gần đây (posts.hot.sweep-window) để sửa điểm lệch, và bổ sung điểm cho bài cũ khi khởi động
+// Mỗi lần ghi chỉ áp dụng khi likes vẫn bằng giá trị đã dùng để tính, nên ghi chậm không đè điểm mới hơn.
+@Slf4j
+@Service
+public class HotScoreService {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration sweepWindow;
+
+    public HotScoreService(MongoTemplate mongoTemplate,
+                           @Value("${posts.hot.sweep-window:7d}") Duration sweepWindow) {
+        this.mongoTemplate = mongoTemplate;
+        this.sweepWindow = sweepWindow;
+    }
+
+    // post cần có id, likes và createdAt
+    public void update(Post post) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(post.getId()).and("likes").is(post.getLikes())),
+                Update.update("hotScore", HotScore.of(post.getLikes(), post.getCreatedAt())), Post.class);
+    }
+
+    @EventListener
+    public void onLikesFlushed(LikesFlushedEvent event) {
+        recompute(Query.query(Criteria.where("id").in(event.deltas().keySet())));
+    }
+
+    @Scheduled(fixedDelayString = "${posts.hot.sweep-interval-ms:300000}", initialDelayString = "${posts.hot.sweep-interval-ms:300000}")
+    public void sweep() {
+        try {
+            int updated = recompute(Query.query(Criteria.where("createdAt").gte(LocalDateTime.now().minus(sweepWindow))));
+            if (updated > 0) {
+                log.debug("Corrected hot score of {} recent posts", updated);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Hot score sweep failed", e);
+        }
+    }
+
+    // Bài tạo trước khi có hotScore; trường thiếu được index như null nên truy vấn dùng index hotScore_id
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            int updated = recompute(Query.query(Criteria.where("hotScore").is(null)));
+            if (updated > 0) {
+                log.info("Computed hot score for {} existing posts", updated);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not backfill hot scores", e);
+        }
+    }
+
+    // Đọc likes/createdAt theo cursor và ghi lại các điểm bị lệch bằng bulk write theo lô
+    private int recompute(Query query) {
+        query.fields().include("likes", "createdAt", "hotScore");
+        query.cursorBatchSize(BATCH_SIZE);
+
+        int updated = 0;
+        int pending = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+        try (Stream<Post> posts = mongoTemplate.stream(query, Post.class)) {
+            Iterator<Post> iterator = posts.iterator();
+            while (iterator.hasNext()) {
+                Post post = iterator.next();
+                double score = HotScore.of(post.getLikes(), post.getCreatedAt());
+                if (score == post.getHotScore()) {
+                    continue;
+                }
+                bulk.updateOne(Query.query(Criteria.where("id").is(post.getId()).and("likes").is(post.getLikes())),
+                        Update.update("hotScore", score));
+                if (++pending == BATCH_SIZE) {
+                    updated += bulk.execute().getModifiedCount();
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            updated += bulk.execute().getModifiedCount();
+        }
+        return updated;
+    }
+}
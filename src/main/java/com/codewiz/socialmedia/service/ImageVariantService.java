@@ -0,0 +1,209 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.config.AWSConfig;
+import com.codewiz.socialmedia.model.ImageVariant;
+import com.codewiz.socialmedia.model.Post;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+// Tạo các bản thu nhỏ (ImageVariant) cho ảnh của bài viết trên thread pool riêng có giới hạn, sau khi ảnh gốc đã lên S3.
+// Variant được lưu cạnh ảnh gốc (<key>-thumb, <key>-feed) và ghi vào Post.variants; khi chưa có (đang xử lý,
+// hàng đợi đầy, ảnh nhỏ hơn kích thước variant) feed dùng ảnh gốc.
+@Slf4j
+@Service
+public class ImageVariantService {
+
+    // Không giải mã ảnh quá lớn (chống "decompression bomb")
+    private static final long MAX_SOURCE_PIXELS = 40_000_000L;
+    // Ảnh gốc được giải mã với source subsampling về không dưới 2 lần variant lớn nhất (đủ cho resize từng bước),
+    // nên bộ nhớ của mỗi task theo kích thước variant chứ không theo ảnh gốc
+    private static final int DECODE_WIDTH =
+            2 * Arrays.stream(ImageVariant.values()).mapToInt(ImageVariant::getMaxWidth).max().orElseThrow();
+    // Ảnh rất cao và hẹp gần như không được lấy mẫu thưa: bỏ qua nếu bản giải mã vẫn quá lớn (~48MB với 3 byte/pixel)
+    private static final long MAX_DECODED_PIXELS = 16_000_000L;
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final S3Client s3Client;
+    private final MongoTemplate mongoTemplate;
+    private final PostCache postCache;
+    private final TaskExecutor executor;
+
+    public ImageVariantService(S3Client s3Client,
+                               MongoTemplate mongoTemplate,
+                               PostCache postCache,
+                               @Qualifier("imageVariantExecutor") TaskExecutor executor) {
+        this.s3Client = s3Client;
+        this.mongoTemplate = mongoTemplate;
+        this.postCache = postCache;
+        this.executor = executor;
+    }
+
+    public static String variantKey(String sourceKey, ImageVariant variant) {
+        return sourceKey + "-" + variant.getKeySuffix();
+    }
+
+    public void generateAsync(String postId, String sourceKey) {
+        try {
+            executor.execute(() -> generate(postId, sourceKey));
+        } catch (TaskRejectedException e) {
+            log.warn("Image variant queue is full, post {} will be served the original image", postId);
+        }
+    }
+
+    void generate(String postId, String sourceKey) {
+        List<String> created = new ArrayList<>();
+        try {
+            BufferedImage source = read(sourceKey);
+            if (source == null) {
+                return;
+            }
+            Update update = new Update();
+            for (ImageVariant variant : ImageVariant.values()) {
+                if (source.getWidth() <= variant.getMaxWidth()) {
+                    continue;
+                }
+                byte[] jpeg = encodeJpeg(resize(source, variant.getMaxWidth()));
+                String key = variantKey(sourceKey, variant);
+                s3Client.putObject(builder -> builder
+                        .bucket(AWSConfig.BUCKET_NAME)
+                        .key(key)
+                        .contentType("image/jpeg")
+                        .contentLength((long) jpeg.length), RequestBody.fromBytes(jpeg));
+                created.add(key);
+                update.set("variants." + variant.name(), key);
+            }
+            if (created.isEmpty()) {
+                return;
+            }
+            update.inc("version", 1);
+            // Chỉ ghi nếu bài viết vẫn dùng ảnh gốc này (có thể đã bị sửa hoặc xoá trong lúc xử lý)
+            UpdateResult result = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("id").is(postId).and("mediaUrl").is(sourceKey)), update, Post.class);
+            if (result.getMatchedCount() == 0) {
+                deleteQuietly(created);
+                return;
+            }
+            postCache.invalidate(postId);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not create image variants for post {}", postId, e);
+            deleteQuietly(created);
+        }
+    }
+
+    private BufferedImage read(String key) throws IOException {
+        try (ResponseInputStream<GetObjectResponse> in = s3Client.getObject(builder -> builder
+                .bucket(AWSConfig.BUCKET_NAME).key(key));
+             ImageInputStream imageInput = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                log.debug("No image reader for {}, skipping variants", key);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                long pixels = (long) width * height;
+                if (pixels > MAX_SOURCE_PIXELS) {
+                    log.warn("Image {} has {} pixels, skipping variants", key, pixels);
+                    return null;
+                }
+                // Chỉ giải mã mỗi hàng/cột thứ step; bản giải mã vẫn rộng ít nhất DECODE_WIDTH nếu ảnh gốc rộng hơn
+                int step = Math.max(1, width / DECODE_WIDTH);
+                long decodedPixels = (long) ((width + step - 1) / step) * ((height + step - 1) / step);
+                if (decodedPixels > MAX_DECODED_PIXELS) {
+                    log.warn("Image {} is {}x{}, skipping variants", key, width, height);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Thu nhỏ từng bước một nửa rồi mới về đúng kích thước: nội suy bilinear một bước từ ảnh rất lớn cho kết quả răng cưa
+    static BufferedImage resize(BufferedImage source, int targetWidth) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                // JPEG không có kênh alpha: phần trong suốt thành nền trắng
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width > targetWidth);
+        return current;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private void deleteQuietly(List<String> keys) {
+        for (String key : keys) {
+            try {
+                s3Client.deleteObject(builder -> builder.bucket(AWSConfig.BUCKET_NAME).key(key));
+            } catch (RuntimeException e) {
+                log.warn("Could not delete orphaned image variant {}", key, e);
+            }
+        }
+    }
+}
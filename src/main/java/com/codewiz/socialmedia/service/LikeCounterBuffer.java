@@ -0,0 +1,165 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.model.Post;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Gom các lượt like trong bộ nhớ rồi ghi xuống Mongo theo lô bằng một bulkWrite $inc,
+// thay vì mỗi lượt like là một round trip. Bật bằng posts.likes.coalescing.enabled=true.
+// Độ trễ tối đa của số like trong DB là một chu kỳ flush; đường đọc cộng thêm pendingLikes() để thấy số mới nhất.
+@Slf4j
+@Component
+public class LikeCounterBuffer {
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+
+    // Mỗi bài viết một LongAdder: tăng đồng thời không khoá, chia stripe theo thread
+    private final ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final AtomicLong oldestPendingNanos = new AtomicLong();
+
+    private final DistributionSummary flushSize;
+    private final Counter flushedLikes;
+    private final Timer flushLag;
+    private final Counter flushFailures;
+
+    public LikeCounterBuffer(MongoTemplate mongoTemplate,
+                             ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry,
+                             @Value("${posts.likes.coalescing.enabled:false}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.flushSize = DistributionSummary.builder("posts.likes.flush.size")
+                .description("Number of posts written per like flush")
+                .register(meterRegistry);
+        this.flushedLikes = Counter.builder("posts.likes.flushed")
+                .description("Likes written to Mongo by the coalescing buffer")
+                .register(meterRegistry);
+        this.flushLag = Timer.builder("posts.likes.flush.lag")
+                .description("Age of the oldest buffered like when it was flushed")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("posts.likes.flush.failures")
+                .register(meterRegistry);
+        meterRegistry.gauge("posts.likes.pending.posts", pending, Map::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void increment(String postId) {
+        add(postId, 1);
+    }
+
+    // Số like đã nhận nhưng chưa được đưa vào một lần ghi. Phần đang bulkWrite không được cộng: người đọc không
+    // biết bản ghi (hay bản cache) mình vừa đọc đã có phần đó chưa, nên trong lúc ghi số like có thể thiếu tạm
+    // thời nhưng không bao giờ bị đếm hai lần; cache được bỏ ngay khi ghi xong (LikesFlushedEvent).
+    public long pendingLikes(String postId) {
+        LongAdder adder = pending.get(postId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    private void add(String postId, long delta) {
+        oldestPendingNanos.compareAndSet(0, System.nanoTime());
+        LongAdder adder = pending.computeIfAbsent(postId, id -> new LongAdder());
+        adder.add(delta);
+        if (pending.get(postId) != adder) {
+            // adder vừa bị flush gỡ khỏi map sau khi ta cộng: chuyển phần còn lại sang adder mới
+            long stranded = adder.sumThenReset();
+            if (stranded != 0) {
+                add(postId, stranded);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${posts.likes.coalescing.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long startedAt = oldestPendingNanos.getAndSet(0);
+
+        Map<String, Long> deltas = new HashMap<>();
+        pending.forEach((postId, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.put(postId, delta);
+            } else if (pending.remove(postId, adder)) {
+                // Không còn ai dùng adder này; nếu có lượt like chen vào trước khi gỡ thì giữ lại cho lần sau
+                long late = adder.sumThenReset();
+                if (late != 0) {
+                    add(postId, late);
+                }
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        write(deltas);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        eventPublisher.publishEvent(new LikesFlushedEvent(Map.copyOf(deltas)));
+
+        flushSize.record(deltas.size());
+        flushedLikes.increment(deltas.values().stream().mapToLong(Long::longValue).sum());
+        if (startedAt != 0) {
+            flushLag.record(Duration.ofNanos(System.nanoTime() - startedAt));
+        }
+    }
+
+    // Ghi các delta bằng một bulkWrite; delta nào lỗi được trả lại buffer và bị bỏ khỏi deltas
+    private void write(Map<String, Long> deltas) {
+        List<Map.Entry<String, Long>> ops = new ArrayList<>(deltas.entrySet());
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+            ops.forEach(op ->
+                    bulk.updateOne(Query.query(Criteria.where("id").is(op.getKey())), new Update().inc("likes", op.getValue())));
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // Bulk không theo thứ tự: chỉ trả lại các thao tác lỗi, phần đã ghi thành công không được cộng lại
+            flushFailures.increment();
+            log.warn("Failed to flush likes for {} of {} posts, retrying on next flush", e.getErrors().size(), ops.size(), e);
+            e.getErrors().forEach(error -> {
+                String postId = ops.get(error.getIndex()).getKey();
+                add(postId, deltas.remove(postId));
+            });
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            log.warn("Failed to flush likes for {} posts, retrying on next flush", ops.size(), e);
+            deltas.forEach(this::add);
+            deltas.clear();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
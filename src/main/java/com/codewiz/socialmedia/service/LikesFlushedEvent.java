@@ -0,0 +1,7 @@
+package com.codewiz.socialmedia.service;
+
+import java.util.Map;
+
+// Phát ra sau khi LikeCounterBuffer ghi thành công số like xuống DB: postId -> số like vừa cộng
+public record LikesFlushedEvent(Map<String, Long> deltas) {
+}
@@ -0,0 +1,313 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.config.AWSConfig;
+import com.codewiz.socialmedia.model.MediaPurgeJob;
+import com.codewiz.socialmedia.model.MediaPurgeKey;
+import com.codewiz.socialmedia.model.MediaPurgeRetry;
+import com.codewiz.socialmedia.model.Post;
+import com.codewiz.socialmedia.repository.MediaPurgeJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// Xoá bài viết của user và media của chúng trên S3 ở background bằng DeleteObjects (tối đa 1000 key mỗi request).
+// Tiến độ được lưu trong media_purge_job nên job chạy tiếp được sau khi khởi động lại;
+// key xoá lỗi được ghi vào media_purge_retry và thử lại định kỳ.
+// Mỗi job chỉ chạy trên một instance: instance nhận job bằng findAndModify ghi owner và leaseUntil,
+// gia hạn lease sau mỗi lô; job của instance chết được instance khác nhận lại khi lease hết hạn.
+@Slf4j
+@Service
+public class MediaPurgeService {
+
+    // Giới hạn số key của một request DeleteObjects
+    static final int MAX_KEYS_PER_REQUEST = 1000;
+
+    private final S3Client s3Client;
+    private final MongoTemplate mongoTemplate;
+    private final MediaPurgeJobRepository jobRepository;
+    private final TaskExecutor executor;
+    private final PostCache postCache;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration lease;
+    // Duy nhất cho mỗi tiến trình: hai tiến trình cùng host (cùng HOSTNAME) không được coi là một owner
+    private final String owner;
+
+    public MediaPurgeService(S3Client s3Client,
+                             MongoTemplate mongoTemplate,
+                             MediaPurgeJobRepository jobRepository,
+                             @Qualifier("mediaPurgeExecutor") TaskExecutor executor,
+                             PostCache postCache,
+                             @Value("${media.purge.retry.max-attempts:10}") int maxAttempts,
+                             @Value("${media.purge.retry.backoff:1m}") Duration retryBackoff,
+                             @Value("${media.purge.lease:5m}") Duration lease,
+                             @Value("${app.instance-id:${HOSTNAME:local}}") String instanceId) {
+        this.s3Client = s3Client;
+        this.mongoTemplate = mongoTemplate;
+        this.jobRepository = jobRepository;
+        this.executor = executor;
+        this.postCache = postCache;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.lease = lease;
+        this.owner = instanceId + "-" + UUID.randomUUID();
+    }
+
+    // Tạo job xoá các bài viết (tạo tới thời điểm này) của user cùng media của chúng, và các key khác cần xoá
+    // (ảnh đại diện). Bài viết được duyệt và xoá trong job, không phải trên thread của request.
+    public MediaPurgeJob submit(String userId, Collection<String> extraKeys) {
+        MediaPurgeJob job = new MediaPurgeJob();
+        job.setUserId(userId);
+        job.setStatus(MediaPurgeJob.Status.PENDING);
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        MediaPurgeJob saved = jobRepository.save(job);
+
+        int added = addKeys(saved.getId(), extraKeys);
+        if (added > 0) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(saved.getId())),
+                    new Update().inc("totalKeys", added), MediaPurgeJob.class);
+            saved.setTotalKeys(added);
+        }
+        schedule(saved.getId());
+        return saved;
+    }
+
+    public Optional<MediaPurgeJob> findJob(String jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    // Chạy tiếp các job dở dang chưa có instance nào giữ (ví dụ instance chạy nó bị tắt giữa chừng)
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        try {
+            Query query = Query.query(claimable(LocalDateTime.now()));
+            query.fields().include("id");
+            mongoTemplate.find(query, MediaPurgeJob.class).forEach(job -> schedule(job.getId()));
+        } catch (RuntimeException e) {
+            log.warn("Could not resume media purge jobs", e);
+        }
+    }
+
+    private void schedule(String jobId) {
+        executor.execute(() -> {
+            try {
+                run(jobId);
+            } catch (RuntimeException e) {
+                // Job vẫn ở trạng thái dở dang: trả lease để sweeper (trên bất kỳ instance nào) chạy lại
+                log.warn("Media purge job {} stopped, it will be resumed", jobId, e);
+                release(jobId);
+            }
+        });
+    }
+
+    void run(String jobId) {
+        MediaPurgeJob job = claim(jobId);
+        if (job == null) {
+            // Đã xong hoặc đang được instance khác chạy
+            return;
+        }
+        if (!job.isPostsCollected() && !collectPosts(job)) {
+            return;
+        }
+        if (!purgeKeys(jobId)) {
+            return;
+        }
+
+        mongoTemplate.updateFirst(owned(jobId), new Update()
+                .set("status", MediaPurgeJob.Status.COMPLETED)
+                .unset("owner")
+                .unset("leaseUntil")
+                .set("updatedAt", LocalDateTime.now()), MediaPurgeJob.class);
+        log.info("Media purge job {} for user {} finished", jobId, job.getUserId());
+    }
+
+    // Xoá bài viết của user theo từng lô; key media của lô được ghi vào media_purge_key trước khi xoá bài,
+    // nên job dừng giữa chừng rồi chạy lại không bỏ sót key nào. Trả về false nếu lease đã mất.
+    private boolean collectPosts(MediaPurgeJob job) {
+        Query query = Query.query(Criteria.where("creator._id").is(job.getUserId())
+                        .and("createdAt").not().gt(job.getCreatedAt()))
+                .limit(MAX_KEYS_PER_REQUEST);
+        query.fields().include("id").include("mediaUrl").include("variants");
+        for (List<Post> posts = mongoTemplate.find(query, Post.class); !posts.isEmpty();
+             posts = mongoTemplate.find(query, Post.class)) {
+            int added = addKeys(job.getId(), posts.stream().flatMap(MediaPurgeService::mediaKeys).toList());
+            List<String> ids = posts.stream().map(Post::getId).toList();
+            mongoTemplate.remove(Query.query(Criteria.where("id").in(ids)), Post.class);
+            ids.forEach(postCache::invalidate);
+            if (!renew(job.getId(), new Update().inc("totalKeys", added))) {
+                return false;
+            }
+        }
+        return renew(job.getId(), new Update().set("postsCollected", true));
+    }
+
+    // Xoá các key của job trên S3 theo từng lô, mỗi lô gỡ đúng các document của nó khỏi media_purge_key
+    private boolean purgeKeys(String jobId) {
+        Query query = Query.query(Criteria.where("jobId").is(jobId)).limit(MAX_KEYS_PER_REQUEST);
+        for (List<MediaPurgeKey> batch = mongoTemplate.find(query, MediaPurgeKey.class); !batch.isEmpty();
+             batch = mongoTemplate.find(query, MediaPurgeKey.class)) {
+            List<String> keys = batch.stream().map(MediaPurgeKey::getKey).toList();
+            Map<String, String> failed = deleteBatch(keys);
+            failed.forEach((key, error) -> recordFailure(jobId, key, error));
+            mongoTemplate.remove(Query.query(Criteria.where("id").in(batch.stream().map(MediaPurgeKey::getId).toList())),
+                    MediaPurgeKey.class);
+            if (!renew(jobId, new Update()
+                    .inc("deletedKeys", keys.size() - failed.size())
+                    .inc("failedKeys", failed.size()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Ghi tiến độ và gia hạn lease trong cùng một update; không khớp nghĩa là lease đã mất vào instance khác
+    private boolean renew(String jobId, Update progress) {
+        boolean stillOwner = mongoTemplate.updateFirst(owned(jobId), progress
+                .set("leaseUntil", LocalDateTime.now().plus(lease))
+                .set("updatedAt", LocalDateTime.now()), MediaPurgeJob.class).getMatchedCount() > 0;
+        if (!stillOwner) {
+            log.warn("Lost the lease on media purge job {}, leaving it to the new owner", jobId);
+        }
+        return stillOwner;
+    }
+
+    // Upsert theo jobId:key nên ghi lại cùng key không tạo bản trùng; trả về số key mới
+    private int addKeys(String jobId, Collection<String> keys) {
+        List<String> distinct = keys.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinct.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MediaPurgeKey.class);
+        distinct.forEach(key -> bulk.upsert(Query.query(Criteria.where("id").is(jobId + ":" + key)),
+                new Update().setOnInsert("jobId", jobId).setOnInsert("key", key)));
+        return bulk.execute().getUpserts().size();
+    }
+
+    // Ảnh gốc và các ảnh thu nhỏ của bài viết
+    private static Stream<String> mediaKeys(Post post) {
+        if (post.getMediaUrl() == null) {
+            return Stream.empty();
+        }
+        return post.getVariants() == null
+                ? Stream.of(post.getMediaUrl())
+                : Stream.concat(Stream.of(post.getMediaUrl()), post.getVariants().values().stream());
+    }
+
+    // Nhận job nếu nó còn dở dang và không có lease còn hạn; trả về null nếu không nhận được
+    private MediaPurgeJob claim(String jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(jobId).andOperator(claimable(now))),
+                new Update()
+                        .set("status", MediaPurgeJob.Status.RUNNING)
+                        .set("owner", owner)
+                        .set("leaseUntil", now.plus(lease))
+                        .set("updatedAt", now),
+                FindAndModifyOptions.options().returnNew(true),
+                MediaPurgeJob.class);
+    }
+
+    private void release(String jobId) {
+        try {
+            mongoTemplate.updateFirst(owned(jobId), new Update().unset("owner").unset("leaseUntil"), MediaPurgeJob.class);
+        } catch (RuntimeException e) {
+            log.warn("Could not release media purge job {}, it will be resumed after the lease expires", jobId, e);
+        }
+    }
+
+    private static Criteria claimable(LocalDateTime now) {
+        return Criteria.where("status").in(MediaPurgeJob.Status.PENDING, MediaPurgeJob.Status.RUNNING)
+                .orOperator(Criteria.where("leaseUntil").is(null), Criteria.where("leaseUntil").lt(now));
+    }
+
+    private Query owned(String jobId) {
+        return Query.query(Criteria.where("id").is(jobId).and("owner").is(owner));
+    }
+
+    // Thử lại các key lỗi đã tới hạn, đồng thời nhặt lại các job có lease đã hết hạn
+    @Scheduled(fixedDelayString = "${media.purge.retry.interval-ms:60000}")
+    public void retryFailed() {
+        resumeUnfinished();
+
+        Query query = Query.query(Criteria.where("nextAttemptAt").lte(LocalDateTime.now()).and("attempts").lt(maxAttempts))
+                .limit(MAX_KEYS_PER_REQUEST);
+        List<MediaPurgeRetry> due;
+        try {
+            due = mongoTemplate.find(query, MediaPurgeRetry.class);
+        } catch (RuntimeException e) {
+            log.warn("Could not load media purge retries", e);
+            return;
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> failed = deleteBatch(due.stream().map(MediaPurgeRetry::getKey).toList());
+        List<String> deleted = due.stream().map(MediaPurgeRetry::getKey).filter(key -> !failed.containsKey(key)).toList();
+        if (!deleted.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("key").in(deleted)), MediaPurgeRetry.class);
+        }
+        due.stream().filter(retry -> failed.containsKey(retry.getKey()))
+                .forEach(retry -> recordFailure(retry.getJobId(), retry.getKey(), failed.get(retry.getKey())));
+        log.info("Retried {} media deletions: {} deleted, {} still failing", due.size(), deleted.size(), failed.size());
+    }
+
+    // Trả về key -> lỗi của các key không xoá được
+    private Map<String, String> deleteBatch(List<String> keys) {
+        Map<String, String> failed = new HashMap<>();
+        try {
+            DeleteObjectsResponse response = s3Client.deleteObjects(builder -> builder
+                    .bucket(AWSConfig.BUCKET_NAME)
+                    .delete(delete -> delete
+                            .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                            .quiet(true)));
+            response.errors().forEach(error -> failed.put(error.key(), error.code() + ": " + error.message()));
+        } catch (SdkException e) {
+            keys.forEach(key -> failed.put(key, e.getMessage()));
+        }
+        return failed;
+    }
+
+    // Ghi (hoặc cập nhật) bản ghi retry với backoff tăng gấp đôi sau mỗi lần thất bại
+    private void recordFailure(String jobId, String key, String error) {
+        MediaPurgeRetry retry = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("key").is(key)),
+                new Update().set("jobId", jobId).set("lastError", error).inc("attempts", 1),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                MediaPurgeRetry.class);
+        int attempts = retry == null ? 1 : retry.getAttempts();
+        Duration delay = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 10));
+        mongoTemplate.updateFirst(Query.query(Criteria.where("key").is(key)),
+                Update.update("nextAttemptAt", LocalDateTime.now().plus(delay)), MediaPurgeRetry.class);
+        if (attempts >= maxAttempts) {
+            log.error("Giving up deleting S3 object {} after {} attempts: {}", key, attempts, error);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.codewiz.socialmedia.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+// Chạy các thao tác BCrypt (kiểm tra/mã hoá mật khẩu) trên thread pool riêng có giới hạn,
+// để đợt đăng nhập dồn dập không chiếm hết thread servlet của các request khác.
+// Khi pool và hàng đợi đã đầy, request bị từ chối ngay với 503 + Retry-After thay vì xếp hàng vô hạn.
+@Service
+public class PasswordHashingService {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final AsyncTaskExecutor executor;
+    private final PasswordEncoder passwordEncoder;
+
+    public PasswordHashingService(@Qualifier("passwordHashingExecutor") AsyncTaskExecutor executor,
+                                  PasswordEncoder passwordEncoder) {
+        this.executor = executor;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            throw new OverloadedException();
+        }
+    }
+
+    public String encode(String rawPassword) {
+        try {
+            return submit(() -> passwordEncoder.encode(rawPassword)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    static class OverloadedException extends ResponseStatusException {
+
+        OverloadedException() {
+            super(HttpStatus.SERVICE_UNAVAILABLE, "Too many password operations in progress, please retry shortly");
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            return headers;
+        }
+    }
+}
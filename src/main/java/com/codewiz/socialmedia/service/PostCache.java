@@ -0,0 +1,58 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.model.Post;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+// Cache đọc-xuyên (read-through) cho bài viết theo id, giới hạn theo số lượng và TTL.
+// Nhiều request cùng đọc một bài chưa có trong cache chỉ tạo ra một lần đọc Mongo (single-flight).
+// Cache giữ bản gốc từ DB; người gọi luôn nhận bản sao để có thể gắn presigned URL, số like chưa flush...
+// Thống kê hit/miss và thời gian load có trên actuator qua metric cache.* với tag cache=posts.
+@Component
+public class PostCache {
+
+    private final Cache<String, Post> cache;
+
+    public PostCache(MeterRegistry meterRegistry,
+                     @Value("${posts.cache.max-size:10000}") long maxSize,
+                     @Value("${posts.cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "posts");
+    }
+
+    // loader trả về null khi không có bài viết; kết quả null không được cache
+    public Post get(String id, Function<String, Post> loader) {
+        Post post = cache.get(id, loader);
+        return post == null ? null : post.copy();
+    }
+
+    public void put(Post post) {
+        cache.put(post.getId(), post.copy());
+    }
+
+    public void invalidate(String id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateByCreator(String creatorId) {
+        cache.asMap().values().removeIf(post -> post.getCreator() != null && creatorId.equals(post.getCreator().getId()));
+    }
+
+    // Số like trong DB vừa thay đổi qua bulk flush: bỏ bản cache cũ để lần đọc sau lấy giá trị mới
+    @EventListener
+    public void onLikesFlushed(LikesFlushedEvent event) {
+        cache.invalidateAll(event.deltas().keySet());
+    }
+}
@@ -0,0 +1,33 @@
+package com.codewiz.socialmedia.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Vị trí của bài viết cuối cùng trong trang theo thứ tự (createdAt DESC, _id DESC), mã hoá thành chuỗi opaque cho client
+record PostCursor(LocalDateTime createdAt, String id) {
+
+    private static final String SEPARATOR = "|";
+
+    String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static PostCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Missing separator");
+            }
+            return new PostCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.model.Post;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordTokenizerFactory;
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.analysis.en.EnglishPossessiveFilterFactory;
+import org.apache.lucene.analysis.en.PorterStemFilterFactory;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilterFactory;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+import org.bson.BsonDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Index full-text (Lucene) của bài viết nằm trên đĩa local, cập nhật cùng lúc với create/update/delete bài viết.
+// Tìm kiếm xếp hạng theo độ liên quan (BM25) trên title, text và tags, có stem tiếng Anh và bỏ dấu tiếng Việt,
+// kèm đoạn trích được highlight. Thay đổi hiện ra sau tối đa một chu kỳ refresh và được commit xuống đĩa định kỳ.
+// Index được giữ đồng bộ với Mongo bởi PostSearchIndexSync (change stream), kể cả thay đổi từ instance khác;
+// trong lúc dựng lại search() trả về empty để người gọi dùng truy vấn Mongo.
+@Slf4j
+@Component
+public class PostSearchIndex {
+
+    private static final String ID = "id";
+    private static final String CREATOR = "creatorId";
+    private static final String TITLE = "title";
+    private static final String TEXT = "text";
+    private static final String TAGS = "tags";
+    private static final String[] SEARCH_FIELDS = {TITLE, TEXT, TAGS};
+    private static final Map<String, Float> BOOSTS = Map.of(TITLE, 2f, TEXT, 1f, TAGS, 3f);
+    private static final String[] HIGHLIGHT_FIELDS = {TITLE, TEXT};
+    private static final int[] HIGHLIGHT_PASSAGES = {1, 2};
+    // Trang sâu phải thu thập (page + 1) * size kết quả, nên giới hạn như các search engine khác
+    private static final int MAX_RESULT_WINDOW = 10_000;
+    private static final String POSITION = "changeStreamPosition";
+    // Tăng khi toDocument thêm/đổi field: index định dạng cũ bị dựng lại khi khởi động (PostSearchIndexSync)
+    private static final String FORMAT = "format";
+    private static final String CURRENT_FORMAT = "2";
+    private static final String CREATED_AT = "createdAt";
+    private static final Sort NEWEST_FIRST = new Sort(
+            new SortField(CREATED_AT, SortField.Type.LONG, true), new SortField(ID, SortField.Type.STRING, true));
+
+    private final MongoTemplate mongoTemplate;
+    private final Analyzer analyzer;
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private volatile boolean ready;
+    private volatile BsonDocument position;
+    private BsonDocument lastCommittedPosition;
+
+    public PostSearchIndex(MongoTemplate mongoTemplate,
+                           @Value("${search.index.path:data/post-index}") Path path) throws IOException {
+        this.mongoTemplate = mongoTemplate;
+        this.analyzer = buildAnalyzer();
+        this.directory = FSDirectory.open(Files.createDirectories(path));
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    // title/text: tách từ, bỏ dấu, stem tiếng Anh; tags: mỗi tag là một term, không phân biệt hoa thường và dấu
+    private static Analyzer buildAnalyzer() throws IOException {
+        Analyzer text = CustomAnalyzer.builder()
+                .withTokenizer(StandardTokenizerFactory.class)
+                .addTokenFilter(LowerCaseFilterFactory.class)
+                .addTokenFilter(ASCIIFoldingFilterFactory.class)
+                .addTokenFilter(EnglishPossessiveFilterFactory.class)
+                .addTokenFilter(PorterStemFilterFactory.class)
+                .build();
+        Analyzer tags = CustomAnalyzer.builder()
+                .withTokenizer(KeywordTokenizerFactory.class)
+                .addTokenFilter(LowerCaseFilterFactory.class)
+                .addTokenFilter(ASCIIFoldingFilterFactory.class)
+                .build();
+        return new PerFieldAnalyzerWrapper(text, Map.of(TAGS, tags));
+    }
+
+    // Vị trí change stream đã áp dụng vào index tại lần commit gần nhất, null nếu chưa có (PostSearchIndexSync)
+    BsonDocument committedPosition() {
+        String position = commitData(POSITION);
+        return position == null || !hasCurrentFormat() ? null : BsonDocument.parse(position);
+    }
+
+    boolean hasCurrentFormat() {
+        return CURRENT_FORMAT.equals(commitData(FORMAT));
+    }
+
+    private String commitData(String key) {
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (key.equals(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    // Vị trí mới nhất đã áp dụng (có thể chưa commit), để mở lại change stream sau lỗi mạng
+    BsonDocument currentPosition() {
+        BsonDocument current = position;
+        return current != null ? current : committedPosition();
+    }
+
+    // Gọi sau khi mọi thay đổi tới vị trí này đã được ghi vào writer; được lưu cùng lần commit tiếp theo
+    void advancePosition(BsonDocument position) {
+        this.position = position;
+    }
+
+    long indexedCount() {
+        return writer.getDocStats().numDocs;
+    }
+
+    void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    synchronized void rebuild() throws IOException {
+        org.springframework.data.mongodb.core.query.Query query = new org.springframework.data.mongodb.core.query.Query();
+        query.fields().include("title", "text", "tags", "creator", "createdAt");
+        query.cursorBatchSize(1000);
+
+        writer.deleteAll();
+        // Vị trí cũ không còn ứng với nội dung index; PostSearchIndexSync ghi vị trí mới sau khi dựng xong
+        writer.setLiveCommitData(Map.of(FORMAT, CURRENT_FORMAT).entrySet());
+        position = null;
+        lastCommittedPosition = null;
+        long count = 0;
+        try (Stream<Post> posts = mongoTemplate.stream(query, Post.class)) {
+            Iterator<Post> iterator = posts.iterator();
+            while (iterator.hasNext()) {
+                Post post = iterator.next();
+                // updateDocument: bài được index song song bởi createPost trong lúc rebuild không bị trùng
+                writer.updateDocument(new Term(ID, post.getId()), toDocument(post));
+                count++;
+            }
+        }
+        writer.commit();
+        searcherManager.maybeRefreshBlocking();
+        log.info("Rebuilt post search index with {} posts", count);
+    }
+
+    public void index(Post post) {
+        try {
+            writer.updateDocument(new Term(ID, post.getId()), toDocument(post));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not index post {}", post.getId(), e);
+        }
+    }
+
+    public void delete(String postId) {
+        try {
+            writer.deleteDocuments(new Term(ID, postId));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not remove post {} from the search index", postId, e);
+        }
+    }
+
+    public void deleteByCreator(String creatorId) {
+        try {
+            writer.deleteDocuments(new Term(CREATOR, creatorId));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not remove posts of user {} from the search index", creatorId, e);
+        }
+    }
+
+    // Empty khi index chưa sẵn sàng. Cú pháp query của Lucene được hỗ trợ ("cụm từ", AND, -loại trừ, tiền tố*);
+    // chuỗi không hợp lệ, regex và fuzzy được tìm như văn bản thường; query quá phức tạp trả về 400.
+    public Optional<Hits> search(String queryText, int page, int size) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        if (page < 0 || size < 1 || (long) (page + 1) * size > MAX_RESULT_WINDOW) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Search results are limited to the first " + MAX_RESULT_WINDOW + " hits");
+        }
+        Query query = parse(queryText);
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = searcher.search(query, (page + 1) * size);
+                ScoreDoc[] pageDocs = Arrays.copyOfRange(top.scoreDocs,
+                        Math.min(page * size, top.scoreDocs.length), top.scoreDocs.length);
+                // search() chỉ đếm chính xác tới 1000 hit rồi bỏ qua các doc không thể vào top (WAND); khi đó
+                // totalHits chỉ là cận dưới nên đếm lại bằng count(), không chấm điểm và dùng docFreq khi được
+                long total = top.totalHits.relation == TotalHits.Relation.EQUAL_TO
+                        ? top.totalHits.value : searcher.count(query);
+                return Optional.of(new Hits(total, toHits(searcher, query, top.totalHits, pageDocs)));
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            log.warn("Post search failed, falling back to Mongo search", e);
+            return Optional.empty();
+        } catch (RuntimeException e) {
+            throw invalidQuery(e);
+        }
+    }
+
+    // Phân trang theo cursor: sắp theo (createdAt DESC, id DESC) như các feed khác chứ không theo điểm, để vị trí
+    // là giá trị của bài viết chứ không phải docId nội bộ (đổi khi segment được merge) và dùng chung PostCursor
+    // với truy vấn Mongo. Empty khi index chưa sẵn sàng.
+    public Optional<CursorHits> searchAfter(String queryText, PostCursor after, int size) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        Query query = parse(queryText);
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = after == null
+                        ? searcher.search(query, size + 1, NEWEST_FIRST)
+                        // Khoá (createdAt, id) là duy nhất; doc cuối của reader chỉ để Lucene chấp nhận FieldDoc
+                        : searcher.searchAfter(new FieldDoc(searcher.getIndexReader().maxDoc() - 1, Float.NaN, new Object[]{
+                                toMillis(after.createdAt()), new BytesRef(after.id())}), query, size + 1, NEWEST_FIRST);
+                ScoreDoc[] pageDocs = top.scoreDocs;
+                String nextCursor = null;
+                if (pageDocs.length > size) {
+                    pageDocs = Arrays.copyOf(pageDocs, size);
+                    Object[] last = ((FieldDoc) pageDocs[size - 1]).fields;
+                    nextCursor = new PostCursor(fromMillis((Long) last[0]), ((BytesRef) last[1]).utf8ToString()).encode();
+                }
+                return Optional.of(new CursorHits(toHits(searcher, query, top.totalHits, pageDocs), nextCursor));
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            log.warn("Post search failed, falling back to Mongo search", e);
+            return Optional.empty();
+        } catch (RuntimeException e) {
+            throw invalidQuery(e);
+        }
+    }
+
+    private List<Hit> toHits(IndexSearcher searcher, Query query, TotalHits totalHits, ScoreDoc[] docs) throws IOException {
+        if (docs.length == 0) {
+            return List.of();
+        }
+        UnifiedHighlighter highlighter = UnifiedHighlighter.builder(searcher, analyzer)
+                .withFormatter(new DefaultPassageFormatter("<em>", "</em>", "… ", true))
+                .build();
+        Map<String, String[]> highlights = highlighter.highlightFields(
+                HIGHLIGHT_FIELDS, query, new TopDocs(totalHits, docs), HIGHLIGHT_PASSAGES);
+
+        StoredFields storedFields = searcher.storedFields();
+        List<Hit> hits = new ArrayList<>(docs.length);
+        for (int i = 0; i < docs.length; i++) {
+            String postId = storedFields.document(docs[i].doc, Set.of(ID)).get(ID);
+            Map<String, String> fragments = new HashMap<>();
+            for (String field : HIGHLIGHT_FIELDS) {
+                String fragment = highlights.get(field)[i];
+                if (fragment != null) {
+                    fragments.put(field, fragment);
+                }
+            }
+            hits.add(new Hit(postId, docs[i].score, fragments));
+        }
+        return hits;
+    }
+
+    // createdAt chỉ dùng để sắp xếp nên quy đổi cố định theo UTC, cùng độ chính xác mili giây như Mongo
+    private static long toMillis(LocalDateTime createdAt) {
+        return createdAt.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private Query parse(String queryText) {
+        MultiFieldQueryParser parser = new RestrictedQueryParser(analyzer);
+        try {
+            return parser.parse(queryText);
+        } catch (ParseException e) {
+            try {
+                // Chữ thường để AND/OR/NOT không còn là toán tử
+                return parser.parse(QueryParser.escape(queryText.toLowerCase(Locale.ROOT)));
+            } catch (ParseException escaped) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid search query");
+            }
+        } catch (RuntimeException e) {
+            throw invalidQuery(e);
+        }
+    }
+
+    // Query quá đắt hoặc không hợp lệ chỉ lộ ra khi Lucene rewrite/determinize: lỗi của người gọi, không phải 500
+    private static ResponseStatusException invalidQuery(RuntimeException e) {
+        if (e instanceof TooComplexToDeterminizeException || e instanceof IndexSearcher.TooManyClauses
+                || e instanceof IllegalArgumentException) {
+            log.debug("Rejected search query", e);
+            return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query is too complex");
+        }
+        throw e;
+    }
+
+    // Không cho wildcard đứng đầu, regex (/.../) và fuzzy (~): các query này phải duyệt cả term dictionary
+    // hoặc dựng automaton lớn. Gặp chúng thì parse() lùi về tìm chuỗi đã escape như văn bản thường.
+    private static final class RestrictedQueryParser extends MultiFieldQueryParser {
+
+        RestrictedQueryParser(Analyzer analyzer) {
+            super(SEARCH_FIELDS, analyzer, BOOSTS);
+            setAllowLeadingWildcard(false);
+        }
+
+        @Override
+        protected Query getRegexpQuery(String field, String termStr) throws ParseException {
+            throw new ParseException("Regular expression queries are not supported");
+        }
+
+        @Override
+        protected Query getFuzzyQuery(String field, String termStr, float minSimilarity) throws ParseException {
+            throw new ParseException("Fuzzy queries are not supported");
+        }
+    }
+
+    private static Document toDocument(Post post) {
+        Document document = new Document();
+        document.add(new StringField(ID, post.getId(), Field.Store.YES));
+        if (post.getCreator() != null && post.getCreator().getId() != null) {
+            document.add(new StringField(CREATOR, post.getCreator().getId(), Field.Store.NO));
+        }
+        // title/text được lưu để highlighter cắt đoạn trích
+        if (post.getTitle() != null) {
+            document.add(new TextField(TITLE, post.getTitle(), Field.Store.YES));
+        }
+        if (post.getText() != null) {
+            document.add(new TextField(TEXT, post.getText(), Field.Store.YES));
+        }
+        if (post.getTags() != null) {
+            post.getTags().forEach(tag -> document.add(new TextField(TAGS, tag, Field.Store.NO)));
+        }
+        // Khoá sắp xếp của searchAfter
+        if (post.getCreatedAt() != null) {
+            document.add(new NumericDocValuesField(CREATED_AT, toMillis(post.getCreatedAt())));
+        }
+        document.add(new SortedDocValuesField(ID, new BytesRef(post.getId())));
+        return document;
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.refresh-interval-ms:1000}")
+    public void refresh() throws IOException {
+        searcherManager.maybeRefresh();
+    }
+
+    // Commit kèm vị trí change stream: thay đổi sau lần commit cuối (kể cả của instance khác) được phát lại
+    // từ vị trí đó khi khởi động lại
+    @Scheduled(fixedDelayString = "${search.index.commit-interval-ms:30000}")
+    public synchronized void commit() throws IOException {
+        BsonDocument current = position;
+        if (current != null && current != lastCommittedPosition) {
+            writer.setLiveCommitData(Map.of(FORMAT, CURRENT_FORMAT, POSITION, current.toJson()).entrySet());
+            lastCommittedPosition = current;
+        }
+        if (writer.hasUncommittedChanges()) {
+            writer.commit();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        ready = false;
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    public record Hits(long total, List<Hit> hits) {
+    }
+
+    public record Hit(String postId, float score, Map<String, String> highlights) {
+    }
+
+    // nextCursor = null khi đã hết kết quả
+    public record CursorHits(List<Hit> hits, String nextCursor) {
+    }
+}
@@ -0,0 +1,235 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.model.Post;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Giữ index Lucene local của mỗi instance hội tụ về Mongo: đọc change stream của collection post
+// (mọi thay đổi, kể cả do instance khác ghi) và áp dụng vào PostSearchIndex. Vị trí đã áp dụng (resume token)
+// được commit cùng index, khởi động lại thì phát lại từ đó; chưa có vị trí, index ở định dạng cũ hoặc oplog
+// không còn giữ vị trí đó thì dựng lại toàn bộ. Mongo không phải replica set (không có change stream) thì chỉ so số lượng như trước
+// và index chỉ thấy thay đổi do chính instance này ghi.
+@Slf4j
+@Component
+public class PostSearchIndexSync {
+
+    // ChangeStreamFatalError, ChangeStreamHistoryLost: vị trí đã rơi khỏi oplog
+    private static final Set<Integer> HISTORY_LOST = Set.of(280, 286);
+    // "The $changeStream stage is only supported on replica sets"
+    private static final int NOT_A_REPLICA_SET = 40573;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    // Cập nhật chỉ đụng tới các trường này mới cần index lại (bỏ qua likes, hotScore, variants...)
+    private static final List<String> INDEXED_FIELDS = List.of("title", "text", "tags", "creator");
+
+    private final MongoTemplate mongoTemplate;
+    private final PostSearchIndex index;
+    private volatile boolean running;
+    private Thread watcher;
+
+    public PostSearchIndexSync(MongoTemplate mongoTemplate, PostSearchIndex index) {
+        this.mongoTemplate = mongoTemplate;
+        this.index = index;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+        try {
+            BsonDocument position = index.committedPosition();
+            try {
+                cursor = open(position);
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == NOT_A_REPLICA_SET) {
+                    log.warn("MongoDB has no change streams, the post search index only sees this instance's writes");
+                    rebuildIfCountsDiffer();
+                    return;
+                }
+                if (!HISTORY_LOST.contains(e.getErrorCode())) {
+                    throw e;
+                }
+                log.info("Post search index position is no longer in the oplog, rebuilding");
+                position = null;
+                cursor = open(null);
+            }
+            if (position == null) {
+                // Con trỏ được mở trước khi dựng lại nên thay đổi trong lúc dựng được phát lại sau đó
+                index.rebuild();
+            }
+            index.setReady(true);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not prepare the post search index, falling back to Mongo search", e);
+            return;
+        }
+        running = true;
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> initial = cursor;
+        watcher = new Thread(() -> watch(initial), "post-index-sync");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (watcher != null) {
+            watcher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void rebuildIfCountsDiffer() throws IOException {
+        long indexed = index.indexedCount();
+        long stored = mongoTemplate.estimatedCount(Post.class);
+        if (indexed != stored || !index.hasCurrentFormat()) {
+            log.info("Post search index has {} documents but Mongo has {} posts, rebuilding", indexed, stored);
+            index.rebuild();
+        }
+        index.setReady(true);
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open(BsonDocument position) {
+        Document changesIndexedFields = new Document("$gt", List.of(new Document("$size", new Document("$filter",
+                new Document("input", new Document("$objectToArray",
+                        new Document("$ifNull", List.of("$updateDescription.updatedFields", new Document()))))
+                        .append("cond", new Document("$in", List.of(
+                                new Document("$arrayElemAt", List.of(new Document("$split", List.of("$$this.k", ".")), 0)),
+                                INDEXED_FIELDS))))), 0));
+        Document match = new Document("$match", new Document("$expr", new Document("$or", List.of(
+                new Document("$ne", List.of("$operationType", "update")),
+                changesIndexedFields))));
+        var changes = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Post.class))
+                .watch(List.of(match))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (position != null) {
+            changes = changes.resumeAfter(position);
+        }
+        return changes.cursor();
+    }
+
+    private void watch(MongoChangeStreamCursor<ChangeStreamDocument<Document>> initial) {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = initial;
+        long backoff = 1000;
+        while (running) {
+            try {
+                if (cursor == null) {
+                    // Chưa có vị trí nào (lỗi ngay sau khi dựng lại): mở từ "bây giờ" sẽ bỏ sót thay đổi
+                    BsonDocument from = index.currentPosition();
+                    cursor = from != null ? open(from) : resync();
+                }
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null && !apply(change)) {
+                    cursor.close();
+                    cursor = resync();
+                    continue;
+                }
+                // Cả khi không có sự kiện, token vẫn tiến theo oplog (postBatchResumeToken)
+                BsonDocument token = cursor.getResumeToken();
+                if (token != null) {
+                    index.advancePosition(token);
+                }
+                backoff = 1000;
+            } catch (MongoCommandException e) {
+                close(cursor);
+                cursor = null;
+                if (HISTORY_LOST.contains(e.getErrorCode())) {
+                    log.warn("Post change stream fell off the oplog, rebuilding the search index");
+                    cursor = resyncQuietly();
+                } else {
+                    backoff = pause(backoff, e);
+                }
+            } catch (IOException | RuntimeException e) {
+                close(cursor);
+                cursor = null;
+                backoff = pause(backoff, e);
+            }
+        }
+        close(cursor);
+    }
+
+    // false khi stream không dùng tiếp được nữa (collection bị drop/đổi tên) và phải dựng lại
+    private boolean apply(ChangeStreamDocument<Document> change) throws IOException {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                // null: bài đã bị xoá trước lúc lookup, sự kiện delete theo sau sẽ gỡ khỏi index
+                Document full = change.getFullDocument();
+                if (full != null) {
+                    index.index(mongoTemplate.getConverter().read(Post.class, full));
+                }
+            }
+            case DELETE -> index.delete(idOf(change.getDocumentKey()));
+            case DROP, RENAME, DROP_DATABASE, INVALIDATE -> {
+                return false;
+            }
+            default -> {
+            }
+        }
+        return true;
+    }
+
+    // Mở con trỏ mới từ thời điểm hiện tại rồi dựng lại index; thay đổi trong lúc dựng được phát lại sau đó
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> resync() throws IOException {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open(null);
+        index.setReady(false);
+        try {
+            index.rebuild();
+        } catch (IOException | RuntimeException e) {
+            close(cursor);
+            throw e;
+        }
+        index.setReady(true);
+        return cursor;
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> resyncQuietly() {
+        try {
+            return resync();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not rebuild the post search index, retrying", e);
+            return null;
+        }
+    }
+
+    private long pause(long backoff, Exception e) {
+        if (!running) {
+            return backoff;
+        }
+        log.warn("Post change stream failed, resuming in {} ms", backoff, e);
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        return Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+    }
+
+    private static String idOf(BsonDocument documentKey) {
+        BsonValue id = documentKey.get("_id");
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+
+    private static void close(MongoChangeStreamCursor<?> cursor) {
+        if (cursor != null) {
+            try {
+                cursor.close();
+            } catch (RuntimeException ignored) {
+                // con trỏ đã hỏng, không còn gì để đóng
+            }
+        }
+    }
+}
@@ -1,39 +1,101 @@
 package com.codewiz.socialmedia.service;
 
 import com.codewiz.socialmedia.config.AWSConfig;
+import com.codewiz.socialmedia.dto.CursorPage;
+import com.codewiz.socialmedia.dto.PostSummary;
+import com.codewiz.socialmedia.dto.PresignedUpload;
+import com.codewiz.socialmedia.dto.TrendingTag;
+import com.codewiz.socialmedia.dto.UploadRequest;
+import com.codewiz.socialmedia.model.ImageVariant;
+import com.codewiz.socialmedia.model.MediaPurgeJob;
 import com.codewiz.socialmedia.model.MediaType;
 import com.codewiz.socialmedia.model.Post;
 import com.codewiz.socialmedia.model.PostCreator;
+import com.codewiz.socialmedia.model.PostRevision;
+import com.codewiz.socialmedia.model.Timeline;
+import com.codewiz.socialmedia.model.TrendingWindow;
+import com.codewiz.socialmedia.model.User;
 import com.codewiz.socialmedia.repository.PostRepository;
+import com.codewiz.socialmedia.util.HotScore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
+import org.springframework.web.server.ResponseStatusException;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
 public class PostService   {
+    private static final int STREAM_CHUNK_SIZE = 100;
+    // Số ký tự (code point) của text trong PostSummary
+    private static final int PREVIEW_LENGTH = 280;
+    private static final Comparator<PostCursor> NEWEST_FIRST =
+            Comparator.comparing(PostCursor::createdAt).thenComparing(PostCursor::id).reversed();
+
     private final PostRepository postRepository;
     private final S3Client s3Client;
     private final S3PresignedUrlService s3PresignedUrlService;
+    private final S3UploadService s3UploadService;
+    private final MongoTemplate mongoTemplate;
+    private final LikeCounterBuffer likeCounterBuffer;
+    private final PostCache postCache;
+    private final MediaPurgeService mediaPurgeService;
+    private final ObjectMapper objectMapper;
+    private final TimelineService timelineService;
+    private final ImageVariantService imageVariantService;
+    private final DirectUploadService directUploadService;
+    private final PostSearchIndex postSearchIndex;
+    private final TrendingTagService trendingTagService;
+    private final HotScoreService hotScoreService;
 
-    public  Post createPost(String title, String text, List<String> tags, MultipartFile mediaFile) throws IOException {
-        String fileName = storeFileInS3(mediaFile);
+    public  Post createPost(String title, String text, List<String> tags, MultipartFile mediaFile, String mediaKey) throws IOException {
         PostCreator creator = getPostCreator();
+        // Tên trong JWT có thể cũ hơn tên hiện tại (token cấp trước khi đổi tên) và bài này sẽ không được
+        // CreatorSyncService sửa lại, nên lấy tên từ users
+        creator.setName(currentName(creator));
+        StoredMedia media = storeMedia(creator.getId(), mediaFile, mediaKey, null);
+        String fileName = media == null ? null : media.key();
         Post post = new Post();
         post.setTitle(title);
         post.setText(text);
@@ -41,10 +103,24 @@ public class PostService   {
         post.setLikes(0);
         post.setCreator(creator);
         post.setCreatedAt(java.time.LocalDateTime.now());
+        post.setHotScore(HotScore.of(0, post.getCreatedAt()));
         post.setMediaUrl(fileName);
-        MediaType mediaType = getMediaType(mediaFile);
+        MediaType mediaType = media == null ? null : media.type();
         post.setMediaType(mediaType);
-        return postRepository.save(post);
+        Post savedPost;
+        try {
+            savedPost = postRepository.save(post);
+        } catch (DuplicateKeyException e) {
+            // Bài viết khác vừa gắn cùng key giữa lúc kiểm tra và lúc ghi (index unique trên mediaUrl)
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Media is already attached to a post");
+        }
+        postSearchIndex.index(savedPost);
+        trendingTagService.record(tags);
+        if (mediaType == MediaType.IMAGE && fileName != null) {
+            imageVariantService.generateAsync(savedPost.getId(), fileName);
+        }
+        timelineService.fanOut(savedPost);
+        return savedPost;
     }
 
     private static PostCreator getPostCreator() {
@@ -59,86 +135,422 @@ public class PostService   {
         return creator;
     }
 
-        private static MediaType getMediaType(MultipartFile mediaFile) {
-            return Objects.requireNonNull(mediaFile.getContentType()).startsWith("video/") ? MediaType.VIDEO :
-                    (mediaFile.getContentType().startsWith("image/") ? MediaType.IMAGE : null);
+    private String currentName(PostCreator creator) {
+        Query query = Query.query(Criteria.where("id").is(creator.getId()));
+        query.fields().include("name");
+        User user = mongoTemplate.findOne(query, User.class);
+        return user != null ? user.getName() : creator.getName();
+    }
+
+        private static MediaType getMediaType(String contentType) {
+            return Objects.requireNonNull(contentType).startsWith("video/") ? MediaType.VIDEO :
+                    (contentType.startsWith("image/") ? MediaType.IMAGE : null);
         }
 
+    public PresignedUpload createMediaUpload(UploadRequest request) {
+        return directUploadService.createPostUpload(getPostCreator().getId(), request);
+    }
+
+    // Media của bài viết: key client đã upload thẳng lên S3 (kiểm tra bằng HEAD) hoặc file gửi kèm request.
+    // current là bài đang sửa (null khi tạo mới): gửi lại đúng key hiện tại của bài thì giữ nguyên media.
+    private StoredMedia storeMedia(String userId, MultipartFile mediaFile, String mediaKey, Post current) throws IOException {
+        if (StringUtils.hasText(mediaKey)) {
+            if (current != null && mediaKey.equals(current.getMediaUrl())) {
+                return new StoredMedia(mediaKey, current.getMediaType());
+            }
+            // Một object chỉ thuộc về một bài viết, nếu không xoá bài này sẽ xoá mất media của bài kia.
+            // Chỉ để báo lỗi sớm trước khi HEAD lên S3; index unique trên mediaUrl mới chặn được ghi đồng thời
+            Criteria attached = Criteria.where("mediaUrl").is(mediaKey);
+            if (current != null) {
+                attached = attached.and("id").ne(current.getId());
+            }
+            if (mongoTemplate.exists(Query.query(attached), Post.class)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Media is already attached to a post");
+            }
+            HeadObjectResponse head = directUploadService.verifyPostUpload(userId, mediaKey);
+            return new StoredMedia(mediaKey, getMediaType(head.contentType()));
+        }
+        String fileName = storeFileInS3(mediaFile);
+        return fileName == null ? null : new StoredMedia(fileName, getMediaType(mediaFile.getContentType()));
+    }
+
+    private record StoredMedia(String key, MediaType type) {
+    }
+
     private String storeFileInS3(MultipartFile mediaFile) throws IOException {
-        String fileName = UUID.randomUUID().toString()+" - "+ mediaFile.getOriginalFilename();
         if(mediaFile !=null && !mediaFile.isEmpty()){
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(AWSConfig.BUCKET_NAME)
-                    .key(fileName)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(mediaFile.getBytes()));
+            String fileName = UUID.randomUUID().toString()+" - "+ mediaFile.getOriginalFilename();
+            s3UploadService.upload(fileName, mediaFile);
+            return fileName;
         }else{return null;}
-        return fileName;
     }
 
-    public Page<Post> getAllPosts(int page, int size,String searchCriteria) {
+    // Trang bài viết chưa có presigned URL: controller so ETag trước, chỉ ký URL khi thật sự trả về nội dung
+    public Page<Post> findAllPosts(int page, int size,String searchCriteria) {
         Sort sort = Sort.by(Sort.Direction.DESC, "createdAt");
         var postList =
                 StringUtils.hasText(searchCriteria)? postRepository.searchByText(searchCriteria,PageRequest.of(page, size, sort))
                         :postRepository.findAll(PageRequest.of(page, size, sort));
-        postList.forEach(post -> {
-            if(post.getMediaUrl()!=null) {
-                post.setPresignedUrl(s3PresignedUrlService.generatePresignedUrl(post.getMediaUrl()));
-            }
-            post.getCreator().setProfilePhoto(s3PresignedUrlService.generatePresignedUrl(post.getCreator().getId()+"-profile"));
-        });
+        addPendingLikes(postList);
         return postList;
     }
     
-    public Post getPostById(String id) {
-        var post =  postRepository.findById(id).orElseThrow(() -> new RuntimeException("Post not found"));
-        if(post.getMediaUrl()!=null) {
-            post.setPresignedUrl(s3PresignedUrlService.generatePresignedUrl(post.getMediaUrl()));
+    // Phân trang theo cursor: seek sau (createdAt, _id) của bài cuối trang trước, không count và không skip.
+    // Chưa có presigned URL, như findAllPosts
+    public CursorPage<Post> findPostsAfter(String cursor, int size, String searchCriteria) {
+        Query query = new Query();
+        if (StringUtils.hasText(searchCriteria)) {
+            query.addCriteria(TextCriteria.forDefaultLanguage().matching(searchCriteria));
+        }
+        return findPostsAfter(query, cursor, size);
+    }
+
+    // Tìm kiếm theo cursor đọc từ index Lucene (mới nhất trước); khi index chưa sẵn sàng thì dùng text index
+    // của Mongo, cùng thứ tự và định dạng cursor. Không quét regex trên cả collection.
+    public CursorPage<Post> searchPostsAfter(String keyword, String cursor, int size, ImageVariant variant) {
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be at least 1");
+        }
+        PostCursor after = StringUtils.hasText(cursor) ? PostCursor.decode(cursor) : null;
+        Optional<PostSearchIndex.CursorHits> hits = postSearchIndex.searchAfter(keyword, after, size);
+        CursorPage<Post> result;
+        if (hits.isPresent()) {
+            List<Post> posts = loadHits(hits.get().hits());
+            addPendingLikes(posts);
+            result = new CursorPage<>(posts, size, hits.get().nextCursor());
+        } else {
+            result = findPostsAfter(cursor, size, keyword);
+        }
+        generatePresignedUrls(result.content(), variant);
+        return result;
+    }
+
+    private CursorPage<Post> findPostsAfter(Query query, String cursor, int size) {
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be at least 1");
+        }
+        if (StringUtils.hasText(cursor)) {
+            query.addCriteria(after(PostCursor.decode(cursor)));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "createdAt", "id")).limit(size + 1);
+
+        List<Post> posts = mongoTemplate.find(query, Post.class);
+        String nextCursor = null;
+        if (posts.size() > size) {
+            posts = posts.subList(0, size);
+            Post last = posts.get(size - 1);
+            nextCursor = new PostCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        addPendingLikes(posts);
+        return new CursorPage<>(posts, size, nextCursor);
+    }
+
+    // Tag mới được thêm khi sửa bài mới tính là một lượt dùng
+    private static List<String> addedTags(List<String> previous, List<String> current) {
+        if (current == null || previous == null || previous.isEmpty()) {
+            return current;
+        }
+        Set<String> before = new HashSet<>();
+        previous.forEach(tag -> before.add(tag.trim().toLowerCase(Locale.ROOT)));
+        return current.stream().filter(tag -> !before.contains(tag.trim().toLowerCase(Locale.ROOT))).toList();
+    }
+
+    public List<TrendingTag> getTrendingTags(TrendingWindow window, int limit) {
+        return trendingTagService.trending(window, limit);
+    }
+
+    // Feed "hot": đọc theo index hotScore_id (điểm đã tính sẵn), phân trang keyset theo (hotScore, _id).
+    // Chưa có presigned URL, như findAllPosts
+    public CursorPage<Post> findHotPostsAfter(String cursor, int size, String searchCriteria) {
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be at least 1");
+        }
+        Query query = new Query();
+        if (StringUtils.hasText(searchCriteria)) {
+            query.addCriteria(TextCriteria.forDefaultLanguage().matching(searchCriteria));
+        }
+        if (StringUtils.hasText(cursor)) {
+            HotPostCursor after = HotPostCursor.decode(cursor);
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("hotScore").lt(after.hotScore()),
+                    Criteria.where("hotScore").is(after.hotScore()).and("id").lt(after.id())));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "hotScore", "id")).limit(size + 1);
+
+        List<Post> posts = mongoTemplate.find(query, Post.class);
+        String nextCursor = null;
+        if (posts.size() > size) {
+            posts = posts.subList(0, size);
+            Post last = posts.get(size - 1);
+            nextCursor = new HotPostCursor(last.getHotScore(), last.getId()).encode();
+        }
+        addPendingLikes(posts);
+        return new CursorPage<>(posts, size, nextCursor);
+    }
+
+    // Điều kiện keyset: các bài đứng sau cursor theo thứ tự (createdAt DESC, _id DESC)
+    private static Criteria after(PostCursor cursor) {
+        return new Criteria().andOperator(new Criteria().orOperator(
+                Criteria.where("createdAt").lt(cursor.createdAt()),
+                Criteria.where("createdAt").is(cursor.createdAt()).and("id").lt(cursor.id())));
+    }
+
+    // Home feed: đọc timeline dựng sẵn của user (một lần đọc theo _id), gộp với bài của các celebrity đang theo dõi
+    // (đọc trực tiếp qua index creator_createdAt), rồi nạp các bài của trang bằng một truy vấn theo _id.
+    public CursorPage<Post> getHomeTimeline(String cursor, int size, ImageVariant variant) {
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be at least 1");
+        }
+        PostCursor after = StringUtils.hasText(cursor) ? PostCursor.decode(cursor) : null;
+        Timeline timeline = timelineService.findTimeline(getPostCreator().getId());
+        if (timeline == null) {
+            return new CursorPage<>(List.of(), size, null);
+        }
+
+        Map<String, PostCursor> candidates = new HashMap<>();
+        if (timeline.getEntries() != null) {
+            timeline.getEntries().stream()
+                    .map(entry -> new PostCursor(entry.getCreatedAt(), entry.getPostId()))
+                    .filter(position -> after == null || NEWEST_FIRST.compare(position, after) > 0)
+                    .limit(size + 1)
+                    .forEach(position -> candidates.put(position.id(), position));
+        }
+        Map<String, Post> loaded = new HashMap<>();
+        if (timeline.getCelebrities() != null && !timeline.getCelebrities().isEmpty()) {
+            Query query = Query.query(Criteria.where("creator._id").in(timeline.getCelebrities()));
+            if (after != null) {
+                query.addCriteria(after(after));
+            }
+            query.with(Sort.by(Sort.Direction.DESC, "createdAt", "id")).limit(size + 1);
+            for (Post post : mongoTemplate.find(query, Post.class)) {
+                loaded.put(post.getId(), post);
+                candidates.put(post.getId(), new PostCursor(post.getCreatedAt(), post.getId()));
+            }
         }
+
+        List<PostCursor> page = candidates.values().stream().sorted(NEWEST_FIRST).limit(size + 1).toList();
+        String nextCursor = null;
+        if (page.size() > size) {
+            page = page.subList(0, size);
+            nextCursor = page.get(size - 1).encode();
+        }
+
+        List<String> missing = page.stream().map(PostCursor::id).filter(id -> !loaded.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            mongoTemplate.find(Query.query(Criteria.where("id").in(missing)), Post.class)
+                    .forEach(post -> loaded.put(post.getId(), post));
+        }
+        // Bài đã bị xoá vẫn còn trong timeline thì bỏ qua
+        List<Post> posts = page.stream().map(position -> loaded.get(position.id())).filter(Objects::nonNull).toList();
+        addPendingLikes(posts);
+        generatePresignedUrls(posts, variant);
+        return new CursorPage<>(posts, size, nextCursor);
+    }
+
+    // Chưa có presigned URL, như findAllPosts
+    public Post findPostById(String id) {
+        var post = loadPost(id);
+        addPendingLikes(List.of(post));
         return post;
     }
 
-    public List<Post> getPostByCreatorId(String creatorId){
-        List<Post> postList= postRepository.findByCreator_Id(creatorId);
-        postList.forEach(post -> {
-            if(post.getMediaUrl()!= null){
-                post.setPresignedUrl(s3PresignedUrlService.generatePresignedUrl(post.getMediaUrl()));
+    // Feed dạng rút gọn, phân trang theo cursor như findPostsAfter. Aggregation chỉ project các trường cần
+    // và cắt text bằng $substrCP ngay trong Mongo nên không phải decode toàn bộ document.
+    // Chưa có presigned URL, như findAllPosts
+    public CursorPage<PostSummary> findPostSummariesAfter(String cursor, int size, String searchCriteria) {
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be at least 1");
+        }
+        List<AggregationOperation> stages = new ArrayList<>();
+        if (StringUtils.hasText(searchCriteria)) {
+            // $text phải nằm ở stage $match đầu tiên
+            stages.add(Aggregation.match(TextCriteria.forDefaultLanguage().matching(searchCriteria)));
+        }
+        if (StringUtils.hasText(cursor)) {
+            stages.add(Aggregation.match(after(PostCursor.decode(cursor))));
+        }
+        stages.add(Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt", "id")));
+        stages.add(Aggregation.limit(size + 1));
+        // Lấy thừa một ký tự để biết text có bị cắt hay không
+        stages.add(Aggregation.project("title", "mediaType", "mediaUrl", "variants", "createdAt", "likes", "version", "creator")
+                .and(StringOperators.valueOf(ConditionalOperators.ifNull("text").then("")).substringCP(0, PREVIEW_LENGTH + 1))
+                .as("preview"));
+
+        List<PostSummary> posts = mongoTemplate.aggregate(Aggregation.newAggregation(Post.class, stages), PostSummary.class)
+                .getMappedResults();
+        String nextCursor = null;
+        if (posts.size() > size) {
+            posts = posts.subList(0, size);
+            PostSummary last = posts.get(size - 1);
+            nextCursor = new PostCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        for (PostSummary post : posts) {
+            String preview = post.getPreview();
+            if (preview.codePointCount(0, preview.length()) > PREVIEW_LENGTH) {
+                post.setPreview(preview.substring(0, preview.offsetByCodePoints(0, PREVIEW_LENGTH)));
+                post.setTruncated(true);
             }
-            post.getCreator().setProfilePhoto(s3PresignedUrlService.generatePresignedUrl(post.getCreator().getId()+"-profile"));
-        });
-        return postList;
+            if (likeCounterBuffer.isEnabled()) {
+                post.setLikes(post.getLikes() + likeCounterBuffer.pendingLikes(post.getId()));
+            }
+        }
+        return new CursorPage<>(posts, size, nextCursor);
     }
 
-    public Post updatePost(String id, String title, String text, List<String> tags, MultipartFile mediaFile) throws IOException {
-        Post post = getPostById(id);
-        if(post.getMediaUrl()!=null){
-            s3Client.deleteObject(builder -> builder.bucket(AWSConfig.BUCKET_NAME).key(post.getMediaUrl()));
+    public void generateSummaryPresignedUrls(List<PostSummary> posts, ImageVariant variant) {
+        List<String> keys = new ArrayList<>(posts.size() * 2);
+        for (PostSummary post : posts) {
+            if (post.getMediaUrl() != null) {
+                keys.add(mediaKey(post.getMediaUrl(), post.getVariants(), variant));
+            }
+            if (post.getCreator() != null && post.getCreator().getId() != null) {
+                keys.add(post.getCreator().getId() + "-profile");
+            }
+        }
+        Map<String, String> urls = s3PresignedUrlService.generatePresignedUrls(keys);
+        for (PostSummary post : posts) {
+            if (post.getMediaUrl() != null) {
+                post.setPresignedUrl(urls.get(mediaKey(post.getMediaUrl(), post.getVariants(), variant)));
+            }
+            if (post.getCreator() != null && post.getCreator().getId() != null) {
+                post.getCreator().setProfilePhoto(urls.get(post.getCreator().getId() + "-profile"));
+            }
         }
-        String fileName = storeFileInS3(mediaFile);
-        post.setTitle(title);
-        post.setText(text);
-        post.setTags(tags);
-        post.setMediaUrl(fileName);
-        MediaType mediaType = getMediaType(mediaFile);
-        post.setMediaType(mediaType);
-        return postRepository.save(post);
     }
 
-    public void deletePost(String id) {
-        Post post = getPostById(id);
-        if(post.getMediaUrl()!=null){
-            s3Client.deleteObject(builder -> builder.bucket(AWSConfig.BUCKET_NAME).key(post.getMediaUrl()));
+    // ETag yếu cho một trang bài viết: id, version và số like của từng bài cùng các tham số ảnh hưởng tới body
+    // (variant, thông tin trang). Tính được trước khi ký URL nên poll không đổi dữ liệu chỉ tốn một truy vấn.
+    public String etag(List<? extends PostRevision> posts, ImageVariant variant, Object... pageInfo) {
+        StringBuilder state = new StringBuilder(posts.size() * 40)
+                .append(variant).append('|')
+                .append(s3PresignedUrlService.urlGeneration());
+        for (Object info : pageInfo) {
+            state.append('|').append(info);
+        }
+        for (PostRevision post : posts) {
+            state.append('|').append(post.getId())
+                    .append(':').append(post.getVersion())
+                    .append(':').append(post.getLikes());
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(state.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // Bản sao bài viết lấy qua cache, chưa cộng like đang chờ và chưa có presigned URL
+    private Post loadPost(String id) {
+        Post post = postCache.get(id, key -> postRepository.findById(key).orElse(null));
+        if (post == null) {
+            throw new RuntimeException("Post not found");
+        }
+        return post;
+    }
+
+    public CursorPage<Post> getPostsByCreatorAfter(String creatorId, String cursor, int size, ImageVariant variant) {
+        CursorPage<Post> result = findPostsAfter(Query.query(Criteria.where("creator._id").is(creatorId)), cursor, size);
+        generatePresignedUrls(result.content(), variant);
+        return result;
+    }
+
+    // Ghi toàn bộ bài viết của một user ra stream (mảng JSON hoặc NDJSON) trong khi đọc từ cursor Mongo.
+    // Chỉ giữ một lô STREAM_CHUNK_SIZE bài trong bộ nhớ để cộng like và tạo presigned URL theo lô,
+    // nên bộ nhớ mỗi request không phụ thuộc số bài viết của user.
+    public void streamPostsByCreator(String creatorId, OutputStream out, boolean ndjson, ImageVariant variant) throws IOException {
+        Query query = Query.query(Criteria.where("creator._id").is(creatorId))
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+        query.cursorBatchSize(STREAM_CHUNK_SIZE);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+             Stream<Post> posts = mongoTemplate.stream(query, Post.class)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (ndjson) {
+                // Mỗi bài một dòng, không chèn dấu cách giữa các giá trị gốc
+                generator.setRootValueSeparator(null);
+            } else {
+                generator.writeStartArray();
+            }
+            List<Post> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            Iterator<Post> iterator = posts.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == STREAM_CHUNK_SIZE || !iterator.hasNext()) {
+                    addPendingLikes(chunk);
+                    generatePresignedUrls(chunk, variant);
+                    for (Post post : chunk) {
+                        generator.writeObject(post);
+                        if (ndjson) {
+                            generator.writeRaw('\n');
+                        }
+                    }
+                    generator.flush();
+                    chunk.clear();
+                }
+            }
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    public Post updatePost(String id, String title, String text, List<String> tags, MultipartFile mediaFile, String mediaKey) throws IOException {
+        Post post = loadPost(id);
+        StoredMedia media = storeMedia(getPostCreator().getId(), mediaFile, mediaKey, post);
+        String fileName = media == null ? null : media.key();
+        MediaType mediaType = media == null ? null : media.type();
+        boolean keepMedia = fileName != null && fileName.equals(post.getMediaUrl());
+        // Chỉ $set các trường được sửa để không ghi đè số like bằng giá trị cũ trong cache
+        Update update = new Update()
+                .set("title", title)
+                .set("text", text)
+                .set("tags", tags)
+                .inc("version", 1);
+        if (!keepMedia) {
+            update.set("mediaUrl", fileName)
+                    .set("mediaType", mediaType)
+                    .unset("variants");
+        }
+        Post updatedPost;
+        try {
+            updatedPost = mongoTemplate.findAndModify(Query.query(Criteria.where("id").is(id)), update,
+                    FindAndModifyOptions.options().returnNew(true), Post.class);
+        } catch (DuplicateKeyException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Media is already attached to a post");
+        }
+        if (updatedPost == null) {
+            postCache.invalidate(id);
+            throw new RuntimeException("Post not found");
+        }
+        // Chỉ xoá media cũ sau khi bài đã trỏ sang media mới
+        if (!keepMedia) {
+            deleteMedia(post);
         }
+        postCache.put(updatedPost);
+        postSearchIndex.index(updatedPost);
+        trendingTagService.record(addedTags(post.getTags(), tags));
+        if (!keepMedia && mediaType == MediaType.IMAGE && fileName != null) {
+            imageVariantService.generateAsync(id, fileName);
+        }
+        if (updatedPost.getMediaUrl() != null) {
+            updatedPost.setPresignedUrl(s3PresignedUrlService.generatePresignedUrl(updatedPost.getMediaUrl()));
+        }
+        return updatedPost;
+    }
+
+    public void deletePost(String id) {
+        Post post = loadPost(id);
+        deleteMedia(post);
         postRepository.deleteById(id);
+        postCache.invalidate(id);
+        postSearchIndex.delete(id);
     }
 
     public String deleteAllByCreatorId(String creatorId) {
         postRepository.deleteAllByCreator_Id(creatorId);
+        postCache.invalidateByCreator(creatorId);
+        postSearchIndex.deleteByCreator(creatorId);
         return "Deleted successfully";
     }
 
 
-    public String deleteAllPostsByUser(String userId) {
+    public MediaPurgeJob deleteAllPostsByUser(String userId) {
         // Kiểm tra quyền sở hữu trước khi cho phép xóa tất cả bài viết
         var auth = (JwtAuthenticationToken) SecurityContextHolder.getContext().getAuthentication();
         var claims = auth.getToken().getClaims();
@@ -148,39 +560,113 @@ public class PostService   {
         if (!currentUserId.equals(userId)) {
             throw new RuntimeException("You do not have permission to delete posts for this user.");
         }
-        List<Post> posts = postRepository.findByCreator_Id(userId);
+        // Bài viết và media trên S3 được xoá ở background theo từng lô; gỡ khỏi kết quả tìm kiếm ngay
+        postSearchIndex.deleteByCreator(userId);
+        return mediaPurgeService.submit(userId, List.of());
+    }
+
+    // Ký URL cho cả trang bài viết trong một lần, mỗi ảnh đại diện chỉ ký một lần dù tác giả có nhiều bài
+    // variant == null: ảnh gốc; nếu bài chưa có variant được yêu cầu (ảnh nhỏ, đang xử lý) cũng dùng ảnh gốc
+    public void generatePresignedUrls(List<Post> posts, ImageVariant variant) {
+        List<String> keys = new ArrayList<>(posts.size() * 2);
         for (Post post : posts) {
             if (post.getMediaUrl() != null) {
-                try {
-                    s3Client.deleteObject(b -> b.bucket(AWSConfig.BUCKET_NAME).key(post.getMediaUrl()));
-                } catch (Exception e) {
-                    // Log lỗi nếu việc xóa tệp không thành công
-                    System.err.println("Error deleting media from S3: " + e.getMessage());
-                    // Có thể thêm cơ chế rollback ở đây nếu cần
-                }
+                keys.add(mediaKey(post, variant));
+            }
+            if (post.getCreator() != null && post.getCreator().getId() != null) {
+                keys.add(post.getCreator().getId() + "-profile");
             }
         }
-        postRepository.deleteAllByCreator_Id(userId);
-        return "Deleted successfully";
+        Map<String, String> urls = s3PresignedUrlService.generatePresignedUrls(keys);
+        for (Post post : posts) {
+            if (post.getMediaUrl() != null) {
+                post.setPresignedUrl(urls.get(mediaKey(post, variant)));
+            }
+            if (post.getCreator() != null && post.getCreator().getId() != null) {
+                post.getCreator().setProfilePhoto(urls.get(post.getCreator().getId() + "-profile"));
+            }
+        }
+    }
+
+    private static String mediaKey(Post post, ImageVariant variant) {
+        return mediaKey(post.getMediaUrl(), post.getVariants(), variant);
     }
 
-    private void generatePresignedUrlForPost(Post post) {
+    private static String mediaKey(String mediaUrl, Map<String, String> variants, ImageVariant variant) {
+        if (variant != null && variants != null && variants.containsKey(variant.name())) {
+            return variants.get(variant.name());
+        }
+        return mediaUrl;
+    }
+
+    // Ảnh gốc và các variant của bài viết
+    private void deleteMedia(Post post) {
         if (post.getMediaUrl() != null) {
-            post.setPresignedUrl(s3PresignedUrlService.generatePresignedUrl(post.getMediaUrl()));
+            s3Client.deleteObject(builder -> builder.bucket(AWSConfig.BUCKET_NAME).key(post.getMediaUrl()));
         }
-        if (post.getCreator() != null && post.getCreator().getId() != null) {
-            post.getCreator().setProfilePhoto(s3PresignedUrlService.generatePresignedUrl(post.getCreator().getId() + "-profile"));
+        if (post.getVariants() != null) {
+            post.getVariants().values().forEach(key ->
+                    s3Client.deleteObject(builder -> builder.bucket(AWSConfig.BUCKET_NAME).key(key)));
         }
     }
 
     public void likePost(String id) {
-        postRepository.incrementLikes(id);
+        if (likeCounterBuffer.isEnabled()) {
+            likeCounterBuffer.increment(id);
+        } else {
+            Query query = Query.query(Criteria.where("id").is(id));
+            query.fields().include("likes", "createdAt");
+            Post liked = mongoTemplate.findAndModify(query, new Update().inc("likes", 1),
+                    FindAndModifyOptions.options().returnNew(true), Post.class);
+            postCache.invalidate(id);
+            if (liked != null) {
+                hotScoreService.update(liked);
+            }
+        }
     }
 
+    // Cộng các lượt like còn nằm trong buffer để người đọc thấy số like mới nhất
+    private void addPendingLikes(Iterable<Post> posts) {
+        if (!likeCounterBuffer.isEnabled()) {
+            return;
+        }
+        for (Post post : posts) {
+            post.setLikes(post.getLikes() + likeCounterBuffer.pendingLikes(post.getId()));
+        }
+    }
+
+
+    // Tìm theo độ liên quan qua PostSearchIndex; khi index chưa sẵn sàng (đang dựng lại) thì dùng truy vấn regex trên Mongo
+    public Page<Post> searchPosts(String searchCriteria, int page, int size, ImageVariant variant) {
+        Optional<PostSearchIndex.Hits> result = postSearchIndex.search(searchCriteria, page, size);
+        if (result.isEmpty()) {
+            Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+            Page<Post> posts = postRepository.findByTitleContainingOrTextContainingOrTagsContaining(searchCriteria, searchCriteria, searchCriteria, pageable);
+            addPendingLikes(posts);
+            generatePresignedUrls(posts.getContent(), variant);
+            return posts;
+        }
 
-    public Page<Post> searchPosts(String searchCriteria, int page, int size) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        return postRepository.findByTitleContainingOrTextContainingOrTagsContaining(searchCriteria, searchCriteria, searchCriteria, pageable);
+        List<Post> posts = loadHits(result.get().hits());
+        addPendingLikes(posts);
+        generatePresignedUrls(posts, variant);
+        return new PageImpl<>(posts, PageRequest.of(page, size), result.get().total());
+    }
+
+    // Đọc các bài viết của một trang kết quả index, giữ thứ tự của index và gắn đoạn trích highlight
+    private List<Post> loadHits(List<PostSearchIndex.Hit> hits) {
+        Map<String, Post> loaded = new HashMap<>();
+        mongoTemplate.find(Query.query(Criteria.where("id").in(hits.stream().map(PostSearchIndex.Hit::postId).toList())), Post.class)
+                .forEach(post -> loaded.put(post.getId(), post));
+        List<Post> posts = new ArrayList<>(hits.size());
+        for (PostSearchIndex.Hit hit : hits) {
+            Post post = loaded.get(hit.postId());
+            if (post != null) {
+                post.setHighlights(hit.highlights());
+                posts.add(post);
+            }
+        }
+        return posts;
     }
 
     // Kiểm tra quyền sở hữu bài viết
@@ -1,31 +1,141 @@
 package com.codewiz.socialmedia.service;
 
 import com.codewiz.socialmedia.config.AWSConfig;
-import lombok.AllArgsConstructor;
+import com.codewiz.socialmedia.dto.PresignedUpload;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
-@AllArgsConstructor
 public class S3PresignedUrlService {
 
+    private static final Duration SIGNATURE_DURATION = Duration.ofHours(48);
+    // URL upload chỉ cần sống đủ lâu để client bắt đầu PUT
+    private static final Duration UPLOAD_SIGNATURE_DURATION = Duration.ofMinutes(15);
+
+    private final S3Presigner presigner;
+    private final long urlReuseMillis;
+
+    // key -> URL đã ký; mỗi URL chỉ được dùng lại khi còn ít nhất minRemainingValidity hiệu lực
+    private final Cache<String, String> urlCache;
+
+    // Thời gian ký thật (cache miss); lượt hit/miss của cache có ở cache.gets{cache=presignedUrls}
+    private final Timer presignSuccess;
+    private final Timer presignError;
+
+    public S3PresignedUrlService(S3Presigner presigner,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${aws.s3.presign.cache.max-size:100000}") long maxSize,
+                                 @Value("${aws.s3.presign.cache.min-remaining-validity:24h}") Duration minRemainingValidity) {
+        if (minRemainingValidity.isNegative() || minRemainingValidity.compareTo(SIGNATURE_DURATION) >= 0) {
+            throw new IllegalArgumentException("aws.s3.presign.cache.min-remaining-validity must be between 0 and " + SIGNATURE_DURATION);
+        }
+        this.presigner = presigner;
+        this.urlReuseMillis = SIGNATURE_DURATION.minus(minRemainingValidity).toMillis();
+        this.urlCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(SIGNATURE_DURATION.minus(minRemainingValidity))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, urlCache, "presignedUrls");
+        this.presignSuccess = presignTimer(meterRegistry, "success");
+        this.presignError = presignTimer(meterRegistry, "error");
+    }
+
+    private static Timer presignTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("s3.presign")
+                .description("Time spent signing S3 GET URLs")
+                .tag("operation", "GetObject")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
     public String generatePresignedUrl(String key) {
-        S3Presigner presigner = S3Presigner.builder().region(Region.AP_SOUTHEAST_2).build();
+        return urlCache.get(key, this::presign);
+    }
+
+    // Ký một lần cho cả trang: loại bỏ key trùng, key chưa có trong cache được ký song song
+    public Map<String, String> generatePresignedUrls(Collection<String> keys) {
+        Set<String> distinctKeys = keys.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        return urlCache.getAll(distinctKeys, this::presignAll);
+    }
+
+    // Đổi sau mỗi chu kỳ dùng lại URL trong cache. Đưa vào ETag để response được client giữ lại (304)
+    // không chứa URL đã hết hạn: URL trả ra trong một chu kỳ còn hiệu lực ít nhất tới hết chu kỳ đó.
+    public long urlGeneration() {
+        return System.currentTimeMillis() / urlReuseMillis;
+    }
+
+    public CacheStats cacheStats() {
+        return urlCache.stats();
+    }
+
+    // Presigned PUT có ký Content-Type và Content-Length: client phải upload đúng loại và kích thước đã khai báo
+    public PresignedUpload presignUpload(String key, String contentType, long contentLength) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(AWSConfig.BUCKET_NAME)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .build();
+        PresignedPutObjectRequest presigned = presigner.presignPutObject(builder -> builder
+                .signatureDuration(UPLOAD_SIGNATURE_DURATION)
+                .putObjectRequest(putObjectRequest));
+
+        Map<String, String> headers = new HashMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!"host".equalsIgnoreCase(name)) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        return new PresignedUpload(key, presigned.url().toExternalForm(), "PUT", headers, presigned.expiration());
+    }
+
+    private Map<String, String> presignAll(Set<? extends String> keys) {
+        return keys.parallelStream()
+                .collect(Collectors.toConcurrentMap(Function.identity(), this::presign));
+    }
+
+    private String presign(String key) {
         GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                 .bucket(AWSConfig.BUCKET_NAME)
                 .key(key)
                 .build();
         GetObjectPresignRequest getObjectPresignRequest = GetObjectPresignRequest.builder()
-                .signatureDuration(Duration.ofHours(48))
+                .signatureDuration(SIGNATURE_DURATION)
                 .getObjectRequest(getObjectRequest)
                 .build();
-        PresignedGetObjectRequest presignedGetObjectRequest = presigner.presignGetObject(getObjectPresignRequest);
-        return presignedGetObjectRequest.url().toExternalForm();
+        long start = System.nanoTime();
+        try {
+            PresignedGetObjectRequest presignedGetObjectRequest = presigner.presignGetObject(getObjectPresignRequest);
+            presignSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return presignedGetObjectRequest.url().toExternalForm();
+        } catch (RuntimeException e) {
+            presignError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
     }
 }
@@ -0,0 +1,209 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.config.AWSConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Upload file lên S3 bằng stream, không đọc toàn bộ file vào heap.
+// File lớn hơn ngưỡng multipart được chia part và upload song song. Mỗi part giữ một permit của upload
+// (tối đa maxPartsInFlight) và một permit buffer dùng chung (tối đa maxBufferedParts cho mọi upload) trước khi
+// được đọc, nên bộ nhớ cho part của toàn bộ các upload không vượt quá partSize * maxBufferedParts;
+// khi hết buffer, thread của request chờ (back-pressure) thay vì đọc thêm part vào heap.
+@Slf4j
+@Service
+public class S3UploadService {
+
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private final S3Client s3Client;
+    private final AsyncTaskExecutor uploadExecutor;
+    private final long multipartThreshold;
+    private final int partSize;
+    private final int maxPartsInFlight;
+    private final Semaphore partBuffers;
+
+    public S3UploadService(S3Client s3Client,
+                           @Qualifier("s3UploadExecutor") AsyncTaskExecutor uploadExecutor,
+                           @Value("${aws.s3.upload.multipart-threshold:16777216}") long multipartThreshold,
+                           @Value("${aws.s3.upload.part-size:8388608}") int partSize,
+                           @Value("${aws.s3.upload.max-parts-in-flight:4}") int maxPartsInFlight,
+                           @Value("${aws.s3.upload.max-buffered-parts:16}") int maxBufferedParts) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("aws.s3.upload.part-size must be at least " + MIN_PART_SIZE + " bytes");
+        }
+        this.s3Client = s3Client;
+        this.uploadExecutor = uploadExecutor;
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = partSize;
+        this.maxPartsInFlight = maxPartsInFlight;
+        this.partBuffers = new Semaphore(maxBufferedParts, true);
+    }
+
+    public void upload(String key, MultipartFile file) throws IOException {
+        long size = file.getSize();
+        try (InputStream in = file.getInputStream()) {
+            if (size < multipartThreshold) {
+                PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                        .bucket(AWSConfig.BUCKET_NAME)
+                        .key(key)
+                        .contentType(file.getContentType())
+                        .contentLength(size)
+                        .build();
+                s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(in, size));
+            } else {
+                multipartUpload(key, file.getContentType(), in);
+            }
+        }
+    }
+
+    private void multipartUpload(String key, String contentType, InputStream in) throws IOException {
+        String uploadId = s3Client.createMultipartUpload(builder -> builder
+                .bucket(AWSConfig.BUCKET_NAME)
+                .key(key)
+                .contentType(contentType)).uploadId();
+
+        List<Part> parts = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(maxPartsInFlight);
+        try {
+            for (int partNumber = 1; ; partNumber++) {
+                // Giữ permit trước khi đọc: buffer 8MiB chỉ được cấp khi part được phép upload
+                PartPermit permit = acquire(inFlight);
+                boolean submitted = false;
+                try {
+                    checkFailedParts(parts);
+                    byte[] bytes = in.readNBytes(partSize);
+                    if (bytes.length == 0) {
+                        break;
+                    }
+                    int number = partNumber;
+                    parts.add(new Part(uploadExecutor.submit(() -> {
+                        if (!permit.claim()) {
+                            // Upload đã bị huỷ trước khi part này chạy
+                            return null;
+                        }
+                        try {
+                            return uploadPart(key, uploadId, number, bytes);
+                        } finally {
+                            permit.release();
+                        }
+                    }), permit));
+                    submitted = true;
+                } finally {
+                    if (!submitted) {
+                        permit.release();
+                    }
+                }
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (Part part : parts) {
+                completedParts.add(part.future().get());
+            }
+            s3Client.completeMultipartUpload(builder -> builder
+                    .bucket(AWSConfig.BUCKET_NAME)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(completedParts)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(key, uploadId, parts);
+            throw new IOException("Upload interrupted: " + key, e);
+        } catch (IOException e) {
+            abort(key, uploadId, parts);
+            throw e;
+        } catch (ExecutionException | RuntimeException e) {
+            abort(key, uploadId, parts);
+            throw new IOException("Multipart upload failed: " + key, e);
+        }
+    }
+
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, byte[] bytes) {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                .bucket(AWSConfig.BUCKET_NAME)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) bytes.length)
+                .build();
+        String eTag = s3Client.uploadPart(uploadPartRequest, RequestBody.fromBytes(bytes)).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    private PartPermit acquire(Semaphore uploadPermits) throws InterruptedException {
+        uploadPermits.acquire();
+        try {
+            partBuffers.acquire();
+        } catch (InterruptedException e) {
+            uploadPermits.release();
+            throw e;
+        }
+        return new PartPermit(uploadPermits);
+    }
+
+    // Dừng sớm nếu một part đã lỗi, không cần đọc hết phần còn lại của file
+    private static void checkFailedParts(List<Part> parts) throws ExecutionException, InterruptedException {
+        for (Part part : parts) {
+            if (part.future().isDone()) {
+                part.future().get();
+            }
+        }
+    }
+
+    private void abort(String key, String uploadId, List<Part> parts) {
+        parts.forEach(part -> {
+            // Task chưa chạy sẽ không bao giờ chạy sau khi bị huỷ, nên abort trả permit thay cho nó
+            if (part.permit().claim()) {
+                part.permit().release();
+            }
+            part.future().cancel(true);
+        });
+        try {
+            s3Client.abortMultipartUpload(builder -> builder
+                    .bucket(AWSConfig.BUCKET_NAME)
+                    .key(key)
+                    .uploadId(uploadId));
+        } catch (RuntimeException e) {
+            log.warn("Could not abort multipart upload {} for {}", uploadId, key, e);
+        }
+    }
+
+    private record Part(Future<CompletedPart> future, PartPermit permit) {
+    }
+
+    // Permit của một part được trả đúng một lần: bởi task upload, hoặc bởi abort nếu task chưa kịp chạy
+    private final class PartPermit {
+        private final Semaphore uploadPermits;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PartPermit(Semaphore uploadPermits) {
+            this.uploadPermits = uploadPermits;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void release() {
+            uploadPermits.release();
+            partBuffers.release();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.model.Follow;
+import com.codewiz.socialmedia.model.Post;
+import com.codewiz.socialmedia.model.Timeline;
+import com.codewiz.socialmedia.model.TimelineEntry;
+import com.codewiz.socialmedia.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Fan-out-on-write cho home timeline: bài viết mới được đẩy vào timeline của tác giả và của từng follower
+// (theo lô, bằng bulkWrite $push có $sort/$slice để giữ tối đa timeline.max-entries phần tử).
+// Tài khoản có nhiều follower hơn timeline.celebrity-threshold được đánh dấu celebrity: bài của họ không được fan-out
+// mà được đọc trực tiếp khi xem feed (fan-out-on-read), tránh một bài viết sinh ra hàng triệu lượt ghi.
+@Slf4j
+@Service
+public class TimelineService {
+
+    private static final int FANOUT_BATCH_SIZE = 500;
+    // Lượt chuyển sang celebrity bị bỏ dở (instance chết giữa chừng) được lượt follow sau nhận lại sau khoảng này
+    private static final Duration PROMOTION_TIMEOUT = Duration.ofMinutes(30);
+
+    private final MongoTemplate mongoTemplate;
+    private final TaskExecutor executor;
+    private final int maxEntries;
+    private final long celebrityThreshold;
+    private final int backfillSize;
+
+    public TimelineService(MongoTemplate mongoTemplate,
+                           @Qualifier("timelineFanoutExecutor") TaskExecutor executor,
+                           @Value("${timeline.max-entries:800}") int maxEntries,
+                           @Value("${timeline.celebrity-threshold:10000}") long celebrityThreshold,
+                           @Value("${timeline.backfill-size:50}") int backfillSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.executor = executor;
+        this.maxEntries = maxEntries;
+        this.celebrityThreshold = celebrityThreshold;
+        this.backfillSize = backfillSize;
+    }
+
+    public Timeline findTimeline(String userId) {
+        return mongoTemplate.findById(userId, Timeline.class);
+    }
+
+    // Chạy nền; khi hàng đợi đầy, thread gọi (request tạo bài) tự chạy fan-out để tạo backpressure
+    public void fanOut(Post post) {
+        String creatorId = post.getCreator().getId();
+        TimelineEntry entry = new TimelineEntry(post.getId(), creatorId, post.getCreatedAt());
+        executor.execute(() -> {
+            try {
+                push(List.of(creatorId), List.of(entry));
+                if (!isCelebrity(creatorId)) {
+                    forEachFollowerBatch(creatorId, followers -> push(followers, List.of(entry)));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Timeline fan-out failed for post {}", post.getId(), e);
+            }
+        });
+    }
+
+    // Gọi sau khi follow đã được lưu và followerCount của followee đã tăng (followee là bản đọc cùng lúc tăng)
+    public void onFollow(String followerId, User followee) {
+        LocalDateTime promotionStartedAt = followee.getCelebrityPromotionStartedAt();
+        if (followee.isCelebrity() || promotionStartedAt != null) {
+            // Đang chuyển sang celebrity: lượt duyệt follower có thể đã đi qua follow này, nên tự thêm vào celebrities
+            mongoTemplate.upsert(Query.query(Criteria.where("userId").is(followerId)),
+                    new Update().addToSet("celebrities", followee.getId()), Timeline.class);
+            if (followee.isCelebrity()) {
+                return;
+            }
+        }
+        backfill(followerId, followee.getId());
+        boolean promotionStalled = promotionStartedAt != null
+                && promotionStartedAt.isBefore(LocalDateTime.now().minus(PROMOTION_TIMEOUT));
+        if (followee.getFollowerCount() >= celebrityThreshold && (promotionStartedAt == null || promotionStalled)) {
+            executor.execute(() -> {
+                try {
+                    promoteToCelebrity(followee.getId());
+                } catch (RuntimeException e) {
+                    log.warn("Could not promote user {} to celebrity", followee.getId(), e);
+                }
+            });
+        }
+    }
+
+    public void onUnfollow(String followerId, String followeeId) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("userId").is(followerId)),
+                new Update().pull("entries", new Document("creatorId", followeeId)).pull("celebrities", followeeId),
+                Timeline.class);
+    }
+
+    // Khi xoá user: gỡ bài và id của user khỏi timeline của các follower rồi xoá timeline của chính user đó.
+    // Phải gọi trước khi xoá các quan hệ follow vì cần danh sách follower.
+    public void deleteAllFor(String userId) {
+        forEachFollowerBatch(userId, followers -> mongoTemplate.updateMulti(
+                Query.query(Criteria.where("userId").in(followers)),
+                new Update().pull("entries", new Document("creatorId", userId)).pull("celebrities", userId),
+                Timeline.class));
+        mongoTemplate.remove(Query.query(Criteria.where("userId").is(userId)), Timeline.class);
+    }
+
+    // Đưa các bài gần nhất của followee vào timeline để feed không trống ngay sau khi follow
+    private void backfill(String followerId, String followeeId) {
+        Query query = Query.query(Criteria.where("creator._id").is(followeeId))
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .limit(backfillSize);
+        query.fields().include("createdAt");
+        List<TimelineEntry> entries = mongoTemplate.find(query, Post.class).stream()
+                .map(post -> new TimelineEntry(post.getId(), followeeId, post.getCreatedAt()))
+                .toList();
+        if (!entries.isEmpty()) {
+            push(List.of(followerId), entries);
+        }
+    }
+
+    // Chuyển sang celebrity mà không bài nào bị mất, chạy lại hay chạy song song cũng không sao:
+    // 1. nhận lượt chuyển bằng update có điều kiện (celebrityPromotionStartedAt); chỉ một task đi tiếp. Từ lúc này
+    //    follow mới tự thêm user vào celebrities của follower (onFollow), còn fan-out vẫn chạy như cũ
+    // 2. thêm user vào celebrities của mọi follower đã có trước lúc nhận
+    // 3. bật cờ celebrity (chỉ khi vẫn giữ lượt chuyển): fan-out dừng, mọi follower đều đọc bài qua celebrities
+    // Trong lúc chuyển bài có thể nằm ở cả hai nguồn; phía đọc đã loại trùng theo id.
+    private void promoteToCelebrity(String userId) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        boolean claimed = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(userId).and("celebrity").ne(true).orOperator(
+                        Criteria.where("celebrityPromotionStartedAt").is(null),
+                        Criteria.where("celebrityPromotionStartedAt").lt(startedAt.minus(PROMOTION_TIMEOUT)))),
+                Update.update("celebrityPromotionStartedAt", startedAt), User.class).getModifiedCount() > 0;
+        if (!claimed) {
+            return;
+        }
+        forEachFollowerBatch(userId, followers -> {
+            // upsert: follower chưa từng nhận bài nào thì chưa có timeline
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Timeline.class);
+            followers.forEach(followerId -> bulk.upsert(Query.query(Criteria.where("userId").is(followerId)),
+                    new Update().addToSet("celebrities", userId)));
+            bulk.execute();
+        });
+        boolean promoted = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(userId).and("celebrityPromotionStartedAt").is(startedAt)),
+                new Update().set("celebrity", true).unset("celebrityPromotionStartedAt"), User.class).getModifiedCount() > 0;
+        if (promoted) {
+            log.info("User {} passed {} followers, posts are now pulled at read time", userId, celebrityThreshold);
+        }
+    }
+
+    private boolean isCelebrity(String userId) {
+        return mongoTemplate.exists(Query.query(Criteria.where("id").is(userId).and("celebrity").is(true)), User.class);
+    }
+
+    private void forEachFollowerBatch(String followeeId, Consumer<List<String>> action) {
+        Query query = Query.query(Criteria.where("followeeId").is(followeeId));
+        query.fields().include("followerId");
+        query.cursorBatchSize(FANOUT_BATCH_SIZE);
+
+        List<String> batch = new ArrayList<>(FANOUT_BATCH_SIZE);
+        try (Stream<Follow> follows = mongoTemplate.stream(query, Follow.class)) {
+            follows.forEach(follow -> {
+                batch.add(follow.getFollowerId());
+                if (batch.size() == FANOUT_BATCH_SIZE) {
+                    action.accept(List.copyOf(batch));
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            action.accept(batch);
+        }
+    }
+
+    private void push(List<String> userIds, List<TimelineEntry> entries) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Timeline.class);
+        for (String userId : userIds) {
+            Update update = new Update();
+            update.push("entries")
+                    .sort(Sort.by(Sort.Direction.DESC, "createdAt"))
+                    .slice(maxEntries)
+                    .each(entries.toArray());
+            bulk.upsert(Query.query(Criteria.where("userId").is(userId)), update);
+        }
+        bulk.execute();
+    }
+}
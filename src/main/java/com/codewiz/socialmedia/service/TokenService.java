@@ -5,10 +5,10 @@ import com.codewiz.socialmedia.model.User;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JOSEObjectType;
 import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
-import lombok.AllArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
@@ -19,11 +19,22 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
-@AllArgsConstructor
 public class TokenService {
 
     private final JwtConfig jwtConfig;
 
+    // MACSigner không giữ trạng thái giữa các lần ký nên dùng chung được cho mọi request
+    private final JWSSigner signer;
+
+    public TokenService(JwtConfig jwtConfig) {
+        this.jwtConfig = jwtConfig;
+        try {
+            this.signer = new MACSigner(jwtConfig.getSecretKey());
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Invalid JWT signing key", e);
+        }
+    }
+
     public String generateToken(Authentication authentication) {
         // header + payload/claims + signature
         var header = new JWSHeader.Builder(jwtConfig.getAlgorithm())
@@ -44,12 +55,9 @@ public class TokenService {
         builder.claim("id", user.getId());
         var claims = builder.build();
 
-        var key = jwtConfig.getSecretKey();
-
         var jwt = new SignedJWT(header, claims);
 
         try {
-            var signer = new MACSigner(key);
             jwt.sign(signer);
         } catch (JOSEException e) {
             throw new RuntimeException("Error generating JWT",e);
@@ -0,0 +1,198 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.dto.TrendingTag;
+import com.codewiz.socialmedia.model.TrendingTagSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Bộ đếm của một cửa sổ trending: count-min sketch cho mọi tag và tập ứng viên top-K có giới hạn.
+// Decay dùng "forward decay": lượt dùng lúc t được cộng trọng số e^((t - landmark)/tau), khi đọc nhân với
+// e^(-(now - landmark)/tau). Thời gian luôn do caller truyền vào nên logic không phụ thuộc đồng hồ hệ thống.
+final class TrendingTagCounter {
+
+    static final int DEPTH = 4;
+    static final int WIDTH = 2048;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+    // Điểm đã decay nhỏ hơn ngưỡng này coi như không còn trending
+    static final double MIN_SCORE = 0.05;
+    // Dời landmark khi trọng số mới vượt e^REBASE_AFTER để double không tràn
+    static final double REBASE_AFTER = 30;
+
+    private final double tau;
+    private final int capacity;
+    private long landmark;
+    private final double[][] counts = new double[DEPTH][WIDTH];
+    // tag -> ước lượng trọng số (theo landmark) tại lần cập nhật gần nhất
+    private final Map<String, Double> candidates = new HashMap<>();
+
+    TrendingTagCounter(long tauMillis, int capacity, long now) {
+        this.tau = tauMillis;
+        this.capacity = capacity;
+        this.landmark = now;
+    }
+
+    synchronized void add(Set<String> tags, long now) {
+        if ((now - landmark) / tau > REBASE_AFTER) {
+            rebase(now);
+        }
+        double weight = Math.exp((now - landmark) / tau);
+        int[] columns = new int[DEPTH];
+        for (String tag : tags) {
+            double current = Double.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                columns[row] = column(tag, row);
+                current = Math.min(current, counts[row][columns[row]]);
+            }
+            // Conservative update: chỉ nâng các ô đang thấp hơn ước lượng mới, giảm sai số do va chạm hash
+            double estimate = current + weight;
+            for (int row = 0; row < DEPTH; row++) {
+                counts[row][columns[row]] = Math.max(counts[row][columns[row]], estimate);
+            }
+            offer(tag, estimate);
+        }
+    }
+
+    // Giữ tối đa capacity ứng viên; tag mới chỉ vào khi ước lượng lớn hơn ứng viên yếu nhất.
+    // So sánh trọng số chung landmark tương đương so sánh điểm đã decay.
+    private void offer(String tag, double estimate) {
+        if (candidates.containsKey(tag) || candidates.size() < capacity) {
+            candidates.put(tag, estimate);
+            return;
+        }
+        Map.Entry<String, Double> weakest = null;
+        for (Map.Entry<String, Double> entry : candidates.entrySet()) {
+            if (weakest == null || entry.getValue() < weakest.getValue()) {
+                weakest = entry;
+            }
+        }
+        if (weakest != null && estimate > weakest.getValue()) {
+            candidates.remove(weakest.getKey());
+            candidates.put(tag, estimate);
+        }
+    }
+
+    private void rebase(long now) {
+        double factor = Math.exp(-(now - landmark) / tau);
+        for (double[] row : counts) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] *= factor;
+            }
+        }
+        candidates.replaceAll((tag, weight) -> weight * factor);
+        candidates.values().removeIf(weight -> weight < MIN_SCORE / 100);
+        landmark = now;
+    }
+
+    List<TrendingTag> top(int limit, long now) {
+        return top(List.of(this), limit, now);
+    }
+
+    // Top-K trên tổng của nhiều sketch (cùng cửa sổ): ứng viên là hợp các tập ứng viên, điểm của một tag là
+    // min theo hàng của tổng các ô đã decay, vẫn là ước lượng trên như count-min của một sketch
+    static List<TrendingTag> top(List<TrendingTagCounter> counters, int limit, long now) {
+        Set<String> tags = new HashSet<>();
+        counters.forEach(counter -> counter.addCandidateTags(tags));
+        List<TrendingTag> scored = new ArrayList<>(tags.size());
+        double[] cells = new double[DEPTH];
+        for (String tag : tags) {
+            Arrays.fill(cells, 0);
+            counters.forEach(counter -> counter.addDecayedCells(tag, now, cells));
+            double score = Arrays.stream(cells).min().orElse(0);
+            if (score >= MIN_SCORE) {
+                scored.add(new TrendingTag(tag, score));
+            }
+        }
+        scored.sort(Comparator.comparingDouble(TrendingTag::score).reversed());
+        return scored.size() > limit ? scored.subList(0, limit) : scored;
+    }
+
+    private synchronized void addCandidateTags(Set<String> into) {
+        into.addAll(candidates.keySet());
+    }
+
+    private synchronized void addDecayedCells(String tag, long now, double[] into) {
+        double decay = Math.exp(-(now - landmark) / tau);
+        for (int row = 0; row < DEPTH; row++) {
+            into[row] += counts[row][column(tag, row)] * decay;
+        }
+    }
+
+    synchronized long landmark() {
+        return landmark;
+    }
+
+    synchronized int candidateCount() {
+        return candidates.size();
+    }
+
+    // Ghi landmark, sketch và ứng viên vào snapshot; caller điền khoá (cửa sổ, instance)
+    synchronized void snapshotInto(TrendingTagSnapshot snapshot) {
+        snapshot.setLandmark(landmark);
+        snapshot.setDepth(DEPTH);
+        snapshot.setWidth(WIDTH);
+        double[] flat = new double[DEPTH * WIDTH];
+        for (int row = 0; row < DEPTH; row++) {
+            System.arraycopy(counts[row], 0, flat, row * WIDTH, WIDTH);
+        }
+        snapshot.setCounts(flat);
+        List<TrendingTagSnapshot.Candidate> top = new ArrayList<>(candidates.size());
+        candidates.forEach((tag, weight) -> top.add(new TrendingTagSnapshot.Candidate(tag, weight)));
+        top.sort(Comparator.comparing(TrendingTagSnapshot.Candidate::weight).reversed());
+        snapshot.setCandidates(top);
+    }
+
+    // Cộng sketch trong snapshot (của instance khác) vào sketch này theo từng ô: count-min cộng được, chỉ cần
+    // đưa về chung landmark. Ứng viên là hợp hai tập, giữ capacity tag có ước lượng lớn nhất sau khi cộng.
+    synchronized void merge(TrendingTagSnapshot snapshot) {
+        double[] flat = snapshot.getCounts();
+        if (snapshot.getDepth() != DEPTH || snapshot.getWidth() != WIDTH
+                || flat == null || flat.length != DEPTH * WIDTH) {
+            return;
+        }
+        if (snapshot.getLandmark() > landmark) {
+            rebase(snapshot.getLandmark());
+        }
+        double factor = Math.exp((snapshot.getLandmark() - landmark) / tau);
+        for (int row = 0; row < DEPTH; row++) {
+            for (int i = 0; i < WIDTH; i++) {
+                counts[row][i] += flat[row * WIDTH + i] * factor;
+            }
+        }
+        Set<String> tags = new HashSet<>(candidates.keySet());
+        if (snapshot.getCandidates() != null) {
+            snapshot.getCandidates().forEach(candidate -> tags.add(candidate.tag()));
+        }
+        candidates.clear();
+        tags.stream()
+                .map(tag -> Map.entry(tag, estimate(tag)))
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(capacity)
+                .forEach(entry -> candidates.put(entry.getKey(), entry.getValue()));
+    }
+
+    private double estimate(String tag) {
+        double estimate = Double.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counts[row][column(tag, row)]);
+        }
+        return estimate;
+    }
+
+    // Cột của tag trên một hàng sketch: hashCode của String ổn định giữa các lần chạy nên snapshot dùng lại được
+    private static int column(String tag, int row) {
+        int h = tag.hashCode() ^ SEEDS[row];
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h & (WIDTH - 1);
+    }
+}
@@ -0,0 +1,187 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.dto.TrendingTag;
+import com.codewiz.socialmedia.model.TrendingTagSnapshot;
+import com.codewiz.socialmedia.model.TrendingWindow;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+// Trending tags tính dần trong bộ nhớ mỗi khi bài viết được tạo/sửa, không phải $unwind/$group cả collection.
+// Mỗi cửa sổ (1h/24h/7d) là một TrendingTagCounter (count-min sketch + tập ứng viên top-K, decay theo thời gian).
+// Mỗi instance đếm các bài viết đi qua chính nó và lưu sketch xuống Mongo định kỳ (một document mỗi cửa sổ
+// mỗi instance). Khi đọc, sketch local được cộng với tổng sketch của các instance khác (nạp lại mỗi lần lưu),
+// nên mọi replica trả về cùng một top-K. Snapshot của instance đã tắt (đóng khi shutdown, hoặc lâu không lưu)
+// được một instance còn sống nhận về và cộng vào sketch của nó, nên khởi động lại hay redeploy không mất dữ liệu
+// dù id instance đổi; lượt dùng sau lần lưu cuối của một tiến trình chết đột ngột thì mất.
+@Slf4j
+@Service
+public class TrendingTagService {
+
+    public static final int MAX_LIMIT = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final int capacity;
+    private final Duration instanceTimeout;
+    // Duy nhất cho mỗi tiến trình, như owner của MediaPurgeService
+    private final String instanceId;
+    private final Map<TrendingWindow, TrendingTagCounter> windows = new EnumMap<>(TrendingWindow.class);
+    // Tổng sketch của các instance khác theo cửa sổ
+    private volatile Map<TrendingWindow, TrendingTagCounter> others = Map.of();
+
+    public TrendingTagService(MongoTemplate mongoTemplate,
+                              @Value("${trending.tags.capacity:200}") int capacity,
+                              @Value("${trending.tags.instance-timeout:5m}") Duration instanceTimeout,
+                              @Value("${app.instance-id:${HOSTNAME:local}}") String instanceId) {
+        this.mongoTemplate = mongoTemplate;
+        this.capacity = capacity;
+        this.instanceTimeout = instanceTimeout;
+        this.instanceId = instanceId + "-" + UUID.randomUUID();
+        long now = System.currentTimeMillis();
+        for (TrendingWindow window : TrendingWindow.values()) {
+            windows.put(window, new TrendingTagCounter(window.getDecay().toMillis(), capacity, now));
+        }
+    }
+
+    public void record(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Một bài viết gắn cùng tag nhiều lần chỉ tính một lượt
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String tag : tags) {
+            String normalized = normalize(tag);
+            if (!normalized.isEmpty()) {
+                distinct.add(normalized);
+            }
+        }
+        windows.values().forEach(counter -> counter.add(distinct, now));
+    }
+
+    public List<TrendingTag> trending(TrendingWindow window, int limit) {
+        TrendingTagCounter local = windows.get(window);
+        TrendingTagCounter other = others.get(window);
+        return TrendingTagCounter.top(other == null ? List.of(local) : List.of(local, other),
+                Math.max(0, Math.min(limit, MAX_LIMIT)), System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        snapshot();
+    }
+
+    // Nhận snapshot bị bỏ lại, lưu snapshot của mình rồi nạp lại sketch của các instance khác.
+    // Lưu ngay sau khi nhận để phần vừa nhận không vắng mặt trong Mongo lâu hơn cần thiết.
+    @Scheduled(fixedDelayString = "${trending.tags.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        absorbAbandoned();
+        save(false);
+        loadOthers();
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        save(true);
+    }
+
+    private void absorbAbandoned() {
+        Date cutoff = new Date(System.currentTimeMillis() - instanceTimeout.toMillis());
+        // savedAt null: document cũ khoá theo tên cửa sổ, trước khi có snapshot theo instance
+        Criteria abandoned = where("instance").ne(instanceId).orOperator(
+                where("closed").is(true), where("savedAt").lt(cutoff), where("savedAt").is(null));
+        try {
+            Query candidates = query(abandoned);
+            candidates.fields().include("id");
+            int absorbed = 0;
+            for (TrendingTagSnapshot candidate : mongoTemplate.find(candidates, TrendingTagSnapshot.class)) {
+                // findAndRemove: mỗi snapshot bị bỏ lại chỉ được đúng một instance cộng vào
+                TrendingTagSnapshot snapshot = mongoTemplate.findAndRemove(
+                        query(where("id").is(candidate.getId()).andOperator(abandoned)), TrendingTagSnapshot.class);
+                TrendingWindow window = snapshot == null ? null : windowOf(snapshot.getWindow());
+                if (window != null) {
+                    windows.get(window).merge(snapshot);
+                    absorbed++;
+                }
+            }
+            if (absorbed > 0) {
+                log.info("Merged {} trending tag snapshots left by stopped instances", absorbed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not merge abandoned trending tag snapshots", e);
+        }
+    }
+
+    private void save(boolean closed) {
+        windows.forEach((window, counter) -> {
+            try {
+                TrendingTagSnapshot snapshot = new TrendingTagSnapshot();
+                snapshot.setId(window.name() + ":" + instanceId);
+                snapshot.setWindow(window.name());
+                snapshot.setInstance(instanceId);
+                snapshot.setSavedAt(new Date());
+                snapshot.setClosed(closed);
+                counter.snapshotInto(snapshot);
+                mongoTemplate.save(snapshot);
+            } catch (RuntimeException e) {
+                log.warn("Could not save trending tags for window {}", window, e);
+            }
+        });
+    }
+
+    private void loadOthers() {
+        long now = System.currentTimeMillis();
+        Map<TrendingWindow, TrendingTagCounter> merged = new EnumMap<>(TrendingWindow.class);
+        try (Stream<TrendingTagSnapshot> snapshots = mongoTemplate.stream(
+                query(where("instance").ne(instanceId)), TrendingTagSnapshot.class)) {
+            snapshots.forEach(snapshot -> {
+                TrendingWindow window = windowOf(snapshot.getWindow());
+                if (window != null) {
+                    merged.computeIfAbsent(window,
+                                    w -> new TrendingTagCounter(w.getDecay().toMillis(), capacity, now))
+                            .merge(snapshot);
+                }
+            });
+            others = merged;
+        } catch (RuntimeException e) {
+            log.warn("Could not load trending tags of other instances", e);
+        }
+    }
+
+    private static TrendingWindow windowOf(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return TrendingWindow.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String normalize(String tag) {
+        return tag == null ? "" : tag.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,280 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.dto.UserSuggestion;
+import com.codewiz.socialmedia.model.User;
+import com.codewiz.socialmedia.util.TextNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Index gợi ý tên người dùng nằm trong bộ nhớ, phục vụ autocomplete mà không cần truy vấn Mongo.
+// Mỗi tên được tách thành các "hậu tố theo từ" ("nguyen van an" -> "nguyen van an", "van an", "an") đã chuẩn hoá,
+// sắp xếp trong mảng và tìm tiền tố bằng binary search.
+// Snapshot chính là các mảng bất biến (chuỗi được intern, owner là int[]); thay đổi mới được ghi vào delta nhỏ
+// (term đã chuẩn hoá sẵn) và được gộp vào snapshot ở background khi delta vượt ngưỡng hoặc đã nằm đủ lâu,
+// nên mỗi lần gợi ý chỉ duyệt vài trăm thay đổi. Gộp là một lượt merge tuyến tính hai mảng đã sắp xếp,
+// không chuẩn hoá hay sắp xếp lại các tên đã có.
+@Slf4j
+@Component
+public class UserNameIndex {
+
+    private static final Duration MAX_LOAD_RETRY_DELAY = Duration.ofMinutes(5);
+
+    private final MongoTemplate mongoTemplate;
+    private final int compactionThreshold;
+    private final Duration compactionMaxAge;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean loaded;
+    // Load lỗi thì thử lại với thời gian chờ tăng dần, để delta không phình mãi vì không được gộp
+    private Duration loadRetryDelay = Duration.ofSeconds(5);
+    private long nextLoadAttemptAt;
+    // userId -> tên mới nhất; name == null nghĩa là user đã bị xoá
+    private final ConcurrentHashMap<String, Change> delta = new ConcurrentHashMap<>();
+
+    public UserNameIndex(MongoTemplate mongoTemplate,
+                         @Value("${users.autocomplete.compaction-threshold:256}") int compactionThreshold,
+                         @Value("${users.autocomplete.compaction-max-age:30s}") Duration compactionMaxAge) {
+        this.mongoTemplate = mongoTemplate;
+        this.compactionThreshold = compactionThreshold;
+        this.compactionMaxAge = compactionMaxAge;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        Query query = new Query();
+        query.fields().include("name");
+        query.cursorBatchSize(1000);
+
+        Map<String, Change> names = new HashMap<>();
+        try (Stream<User> users = mongoTemplate.stream(query, User.class)) {
+            users.forEach(user -> names.put(user.getId(), Change.of(user.getName())));
+        } catch (RuntimeException e) {
+            log.warn("Could not load user names for autocomplete, retrying in {}", loadRetryDelay, e);
+            nextLoadAttemptAt = System.currentTimeMillis() + loadRetryDelay.toMillis();
+            loadRetryDelay = min(loadRetryDelay.multipliedBy(2), MAX_LOAD_RETRY_DELAY);
+            return;
+        }
+        snapshot = Snapshot.EMPTY.merge(names);
+        loaded = true;
+        log.info("Loaded {} users into the autocomplete index", names.size());
+    }
+
+    public void put(String userId, String name) {
+        delta.put(userId, Change.of(name));
+    }
+
+    public void remove(String userId) {
+        delta.put(userId, Change.of(null));
+    }
+
+    public List<UserSuggestion> suggest(String prefix, int limit) {
+        String normalized = TextNormalizer.normalize(prefix);
+        if (normalized == null || normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Snapshot current = snapshot;
+        List<Match> matches = new ArrayList<>(limit);
+        Set<String> seen = new HashSet<>();
+        for (int i = current.lowerBound(normalized);
+             i < current.terms.length && current.terms[i].startsWith(normalized) && matches.size() < limit;
+             i++) {
+            int owner = current.owners[i];
+            String userId = current.userIds[owner];
+            // user có thay đổi chưa gộp thì lấy từ delta bên dưới
+            if (!delta.containsKey(userId) && seen.add(userId)) {
+                matches.add(new Match(current.terms[i], userId, current.names[owner]));
+            }
+        }
+        delta.forEach((userId, change) -> {
+            if (change.name() != null) {
+                for (String term : change.terms()) {
+                    if (term.startsWith(normalized)) {
+                        matches.add(new Match(term, userId, change.name()));
+                        break;
+                    }
+                }
+            }
+        });
+
+        return matches.stream()
+                .sorted(Comparator.comparing(Match::term).thenComparing(Match::userId))
+                .limit(limit)
+                .map(match -> new UserSuggestion(match.userId(), match.name()))
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${users.autocomplete.compaction-interval-ms:1000}")
+    public void compactIfNeeded() {
+        // Chưa load xong thì không gộp (snapshot từ DB sẽ ghi đè các thay đổi đã gộp), mà thử load lại
+        if (!loaded) {
+            if (System.currentTimeMillis() >= nextLoadAttemptAt) {
+                load();
+            }
+            return;
+        }
+        if (delta.size() >= compactionThreshold || oldestChangeAt() <= System.nanoTime() - compactionMaxAge.toNanos()) {
+            compact();
+        }
+    }
+
+    private long oldestChangeAt() {
+        long oldest = Long.MAX_VALUE;
+        for (Change change : delta.values()) {
+            oldest = Math.min(oldest, change.createdAt());
+        }
+        return oldest;
+    }
+
+    // Gộp delta vào một snapshot mới; thay đổi phát sinh trong lúc gộp vẫn nằm lại trong delta
+    synchronized void compact() {
+        Map<String, Change> captured = Map.copyOf(delta);
+        snapshot = snapshot.merge(captured);
+        // Chỉ gỡ đúng thay đổi đã gộp; thay đổi mới hơn cho cùng user vẫn nằm lại trong delta
+        captured.forEach(delta::remove);
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static List<String> terms(String name) {
+        String normalized = TextNormalizer.normalize(name);
+        if (normalized == null || normalized.isEmpty()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        terms.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            terms.add(normalized.substring(i + 1));
+        }
+        return terms;
+    }
+
+    // Term được chuẩn hoá một lần khi ghi, không phải ở mỗi lần gợi ý
+    private record Change(String name, List<String> terms, long createdAt) {
+
+        static Change of(String name) {
+            return new Change(name, name == null ? List.of() : UserNameIndex.terms(name), System.nanoTime());
+        }
+    }
+
+    private record Match(String term, String userId, String name) {
+    }
+
+    private record Entry(String term, int owner) {
+    }
+
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new String[0], new int[0], new String[0], new String[0]);
+
+        // terms đã sắp xếp; owners[i] là vị trí của user sở hữu terms[i] trong userIds/names
+        final String[] terms;
+        final int[] owners;
+        final String[] userIds;
+        final String[] names;
+
+        private Snapshot(String[] terms, int[] owners, String[] userIds, String[] names) {
+            this.terms = terms;
+            this.owners = owners;
+            this.userIds = userIds;
+            this.names = names;
+        }
+
+        // Snapshot mới = snapshot này bỏ user có trong changes (xoá hoặc đổi tên) + tên mới trong changes.
+        // Chỉ term của changes cần sắp xếp; phần còn lại đã sắp xếp nên ghép bằng một lượt merge.
+        Snapshot merge(Map<String, Change> changes) {
+            int[] remap = new int[userIds.length];
+            int kept = 0;
+            for (int owner = 0; owner < userIds.length; owner++) {
+                remap[owner] = changes.containsKey(userIds[owner]) ? -1 : kept++;
+            }
+            int added = 0;
+            for (Change change : changes.values()) {
+                if (change.name() != null) {
+                    added++;
+                }
+            }
+
+            String[] mergedUserIds = new String[kept + added];
+            String[] mergedNames = new String[kept + added];
+            for (int owner = 0; owner < userIds.length; owner++) {
+                if (remap[owner] >= 0) {
+                    mergedUserIds[remap[owner]] = userIds[owner];
+                    mergedNames[remap[owner]] = names[owner];
+                }
+            }
+            List<Entry> entries = new ArrayList<>();
+            int next = kept;
+            for (Map.Entry<String, Change> change : changes.entrySet()) {
+                if (change.getValue().name() != null) {
+                    mergedUserIds[next] = change.getKey();
+                    mergedNames[next] = change.getValue().name();
+                    for (String term : change.getValue().terms()) {
+                        entries.add(new Entry(term.intern(), next));
+                    }
+                    next++;
+                }
+            }
+            entries.sort(Comparator.comparing(Entry::term));
+
+            int keptTerms = 0;
+            for (int owner : owners) {
+                if (remap[owner] >= 0) {
+                    keptTerms++;
+                }
+            }
+            String[] mergedTerms = new String[keptTerms + entries.size()];
+            int[] mergedOwners = new int[mergedTerms.length];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < mergedTerms.length; k++) {
+                while (i < terms.length && remap[owners[i]] < 0) {
+                    i++;
+                }
+                if (j == entries.size() || (i < terms.length && terms[i].compareTo(entries.get(j).term()) <= 0)) {
+                    mergedTerms[k] = terms[i];
+                    mergedOwners[k] = remap[owners[i]];
+                    i++;
+                } else {
+                    Entry entry = entries.get(j++);
+                    mergedTerms[k] = entry.term();
+                    mergedOwners[k] = entry.owner();
+                }
+            }
+            return new Snapshot(mergedTerms, mergedOwners, mergedUserIds, mergedNames);
+        }
+
+        int lowerBound(String prefix) {
+            int low = 0;
+            int high = terms.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (terms[mid].compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
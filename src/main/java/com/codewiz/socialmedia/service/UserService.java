@@ -1,45 +1,51 @@
 package com.codewiz.socialmedia.service;
 
-import com.codewiz.socialmedia.config.AWSConfig;
+import com.codewiz.socialmedia.dto.PresignedUpload;
+import com.codewiz.socialmedia.dto.UploadRequest;
 import com.codewiz.socialmedia.dto.UserResponse;
+import com.codewiz.socialmedia.dto.UserSuggestion;
+import com.codewiz.socialmedia.dto.UserSummary;
 import com.codewiz.socialmedia.model.*;
-import com.codewiz.socialmedia.repository.PostRepository;
 import com.codewiz.socialmedia.repository.UserRepository;
+import com.codewiz.socialmedia.util.TextNormalizer;
 
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.domain.*;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import org.springframework.web.server.ResponseStatusException;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
 @AllArgsConstructor
 public class UserService {
 
-    private final PostRepository postRepository;
+    private static final int MAX_AUTOCOMPLETE_RESULTS = 50;
 
     private final UserRepository userRepository;
 
-    private final S3Client s3Client;
-
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
 
     private final AuthenticationManager authenticationManager;
 
@@ -49,11 +55,25 @@ public class UserService {
 
     private final MongoTemplate mongoTemplate;
 
+    private final S3UploadService s3UploadService;
+
+    private final UserNameIndex userNameIndex;
+
+    private final MediaPurgeService mediaPurgeService;
+
+    private final FollowService followService;
+
+    private final CreatorSyncService creatorSyncService;
+
+    private final DirectUploadService directUploadService;
+
+    private final PostSearchIndex postSearchIndex;
+
     public User register(UserDto userDto) throws IOException {
         User user = new User();
         user.setName(userDto.name());
         user.setEmail(userDto.email());
-        user.setPassword(passwordEncoder.encode(userDto.password()));
+        user.setPassword(passwordHashingService.encode(userDto.password()));
         user.setGender(userDto.gender());
         user.setDateOfBirth(userDto.dateOfBirth());
         user.setOtherWebsites(userDto.otherWebsites());
@@ -64,14 +84,12 @@ public class UserService {
         var mediaFile = userDto.profilePhoto();
         if (mediaFile != null && !mediaFile.isEmpty()) {
             String fileName = uuid + "-profile";
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(AWSConfig.BUCKET_NAME)
-                    .key(fileName)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(mediaFile.getBytes()));
+            s3UploadService.upload(fileName, mediaFile);
             user.setProfilePhoto(fileName);
         }
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userNameIndex.put(savedUser.getId(), savedUser.getName());
+        return savedUser;
     }
 
     private Address convertToAddress(AddressDto addressDto) {
@@ -85,14 +103,17 @@ public class UserService {
         return address;
     }
 
-    public LoginResponse authenticate(LoginDto input) {
-        var authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(input.email(), input.password()));
-        var user = (User) authentication.getPrincipal();
-        String userId= user.getId();
-        String token= tokenService.generateToken(authentication);
-        String profilePhotoUrl = user.getProfilePhoto() != null ? s3PresignedUrlService.generatePresignedUrl(user.getProfilePhoto()) : null;
-        return new LoginResponse(token, userId,user.getName(), user.getEmail(), profilePhotoUrl);
+    // Kiểm tra mật khẩu (BCrypt) chạy trên thread pool riêng, không giữ thread servlet trong lúc băm
+    public CompletableFuture<LoginResponse> authenticate(LoginDto input) {
+        return passwordHashingService.submit(() -> authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken(input.email(), input.password())))
+                .thenApply(authentication -> {
+                    var user = (User) authentication.getPrincipal();
+                    String userId= user.getId();
+                    String token= tokenService.generateToken(authentication);
+                    String profilePhotoUrl = user.getProfilePhoto() != null ? s3PresignedUrlService.generatePresignedUrl(user.getProfilePhoto()) : null;
+                    return new LoginResponse(token, userId,user.getName(), user.getEmail(), profilePhotoUrl);
+                });
     }
 
     public UserResponse getUserById(String userId){
@@ -112,21 +133,20 @@ public class UserService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        String previousName = user.getName();
         user.setName(userDto.getName());
         user.setEmail(userDto.getEmail());
 
         MultipartFile mediaFile = userDto.getProfilePhoto();
         if (mediaFile != null && !mediaFile.isEmpty()) {
             String fileName = userId + "-profile";
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(AWSConfig.BUCKET_NAME)
-                    .key(fileName)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(mediaFile.getBytes()));
+            s3UploadService.upload(fileName, mediaFile);
             user.setProfilePhoto(fileName);
         }
 
         User updatedUser = userRepository.save(user);
+        userNameIndex.put(updatedUser.getId(), updatedUser.getName());
+        scheduleCreatorSync(updatedUser, previousName);
 
         return UserResponse.builder()
                 .id(updatedUser.getId())
@@ -138,12 +158,80 @@ public class UserService {
 
 
 
-    public Page<User> searchUsers(UserSearchCriteria criteria) {
-        // Xây dựng các điều kiện tìm kiếm từ UserSearchCriteria
+    public PresignedUpload createProfilePhotoUpload(UploadRequest request) {
+        return directUploadService.createProfilePhotoUpload(currentUserId(), request);
+    }
+
+    // Ảnh đại diện đã được client upload thẳng lên S3: kiểm tra rồi chuyển về key cố định <userId>-profile
+    public UserResponse setProfilePhoto(String key) {
+        String userId = currentUserId();
+        String fileName = userId + "-profile";
+        directUploadService.promoteProfilePhoto(userId, key, fileName);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(userId)),
+                Update.update("profilePhoto", fileName), User.class);
+        return getUserById(userId);
+    }
+
+    private static String currentUserId() {
+        var auth = (JwtAuthenticationToken) SecurityContextHolder.getContext().getAuthentication();
+        return (String) auth.getToken().getClaims().get("id");
+    }
+
+    // Tên hiển thị trong các bài viết cũ được cập nhật ở background
+    private void scheduleCreatorSync(User user, String previousName) {
+        if (!Objects.equals(previousName, user.getName())) {
+            creatorSyncService.schedule(user.getId(), user.getUpdatedAt());
+        }
+    }
+
+    public List<UserSuggestion> autocomplete(String prefix, int limit) {
+        return userNameIndex.suggest(prefix, Math.min(limit, MAX_AUTOCOMPLETE_RESULTS));
+    }
+
+    // Một aggregation $facet trả về cả trang kết quả và tổng số, thay vì chạy count rồi find.
+    // Trang kết quả chỉ project id, tên và ảnh đại diện (không đọc mật khẩu, địa chỉ...)
+    public Page<UserSummary> searchUsers(UserSearchCriteria criteria) {
+        Pageable pageable = PageRequest.of(criteria.getPage(), criteria.getSize(), Sort.by(Sort.Direction.DESC, "updatedAt"));
+
+        // $sort phải đứng trước $facet: sub-pipeline của $facet không dùng được index nên sort trong đó
+        // sẽ nạp và sắp xếp toàn bộ user khớp điều kiện trong bộ nhớ
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(buildSearchCriteria(criteria)),
+                Aggregation.sort(pageable.getSort()),
+                Aggregation.facet(
+                                Aggregation.skip(pageable.getOffset()),
+                                Aggregation.limit(pageable.getPageSize()),
+                                Aggregation.project("name", "profilePhoto"))
+                        .as("content")
+                        .and(Aggregation.count().as("total"))
+                        .as("total"));
+
+        UserSearchFacet result = mongoTemplate.aggregate(aggregation, User.class, UserSearchFacet.class).getUniqueMappedResult();
+        if (result == null) {
+            return Page.empty(pageable);
+        }
+        long totalCount = result.total().isEmpty() ? 0 : result.total().get(0).total();
+        generateProfilePhotoUrls(result.content());
+        return new PageImpl<>(result.content(), pageable, totalCount);
+    }
+
+    private void generateProfilePhotoUrls(List<UserSummary> users) {
+        Map<String, String> urls = s3PresignedUrlService.generatePresignedUrls(
+                users.stream().map(UserSummary::getProfilePhoto).filter(Objects::nonNull).toList());
+        users.forEach(user -> user.setProfilePhoto(user.getProfilePhoto() == null ? null : urls.get(user.getProfilePhoto())));
+    }
+
+    // Xây dựng các điều kiện tìm kiếm từ UserSearchCriteria
+    public static Criteria buildSearchCriteria(UserSearchCriteria criteria) {
         Criteria searchCriteria = new Criteria();
 
         if (criteria.getName() != null) {
-            searchCriteria = searchCriteria.and("name").regex(criteria.getName(), "i");
+            if (criteria.isNamePrefix()) {
+                // Regex neo đầu chuỗi, phân biệt hoa thường trên trường đã chuẩn hoá nên dùng được index nameLower
+                searchCriteria = searchCriteria.and("nameLower").regex("^" + TextNormalizer.escapeRegex(TextNormalizer.normalize(criteria.getName())));
+            } else {
+                searchCriteria = searchCriteria.and("name").regex(criteria.getName(), "i");
+            }
         }
         if (criteria.getEmail() != null) {
             searchCriteria = searchCriteria.and("email").is(criteria.getEmail());
@@ -166,20 +254,12 @@ public class UserService {
         if (criteria.getOtherWebsites() != null) {
             searchCriteria = searchCriteria.and("otherWebsites").in(criteria.getOtherWebsites());
         }
+        return searchCriteria;
+    }
 
-        // Tạo Query với điều kiện tìm kiếm và phân trang
-        Query query = new Query(searchCriteria);
-
-        // Phân trang
-        Pageable pageable = PageRequest.of(criteria.getPage(), criteria.getSize(), Sort.by(Sort.Direction.DESC, "updatedAt"));
-        query.with(pageable);
-
-        // Thực hiện truy vấn MongoDB
-        long totalCount = mongoTemplate.count(query, User.class);
-        query.skip((long) pageable.getPageNumber() * pageable.getPageSize()).limit(pageable.getPageSize());
-        var users = mongoTemplate.find(query, User.class);
-
-        return new PageImpl<>(users, pageable, totalCount);
+    record UserSearchFacet(List<UserSummary> content, List<Total> total) {
+        record Total(long total) {
+        }
     }
 
 
@@ -187,6 +267,7 @@ public class UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
 
+        String previousName = user.getName();
         if (userDto.name() != null) user.setName(userDto.name());
         if (userDto.email() != null) user.setEmail(userDto.email());
         if (userDto.gender() != null) user.setGender(userDto.gender());
@@ -197,61 +278,38 @@ public class UserService {
         MultipartFile profilePhoto = userDto.profilePhoto();
         if (profilePhoto != null && !profilePhoto.isEmpty()) {
             String fileName = id + "-profile"; // Sử dụng id làm tên file
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(AWSConfig.BUCKET_NAME)
-                    .key(fileName)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(profilePhoto.getBytes()));
+            s3UploadService.upload(fileName, profilePhoto);
             user.setProfilePhoto(fileName);
         }
 
-        return userRepository.save(user);
+        User updatedUser = userRepository.save(user);
+        userNameIndex.put(updatedUser.getId(), updatedUser.getName());
+        scheduleCreatorSync(updatedUser, previousName);
+        return updatedUser;
     }
 
-    public void deleteUser(String id) {
+    // Xoá user ngay; bài viết và media trên S3 được xoá bởi một job nền, trả về job để theo dõi tiến độ
+    public MediaPurgeJob deleteUser(String id) {
         // Tìm user cần xóa
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
 
-        // Xóa ảnh profile nếu có
-        deleteProfilePhotoFromS3(user);
+        // Bài viết của user được job xoá dần; gỡ khỏi kết quả tìm kiếm ngay
+        postSearchIndex.deleteByCreator(id);
 
-        // Xóa các ảnh liên quan đến bài viết của user
-        deletePostMediaFromS3(user);
-
-        // Xóa tất cả các bài post của user
-        postRepository.deleteAllByCreator_Id(id);
+        // Gỡ quan hệ follow và timeline
+        followService.deleteAllFor(id);
 
         // Xóa user khỏi DB
         userRepository.deleteById(id);
-    }
+        userNameIndex.remove(id);
 
-    private void deleteProfilePhotoFromS3(User user) {
-        if (user.getProfilePhoto() != null) {
-            // Xóa ảnh đại diện trên S3
-            s3Client.deleteObject(builder -> builder
-                    .bucket(AWSConfig.BUCKET_NAME)
-                    .key(user.getProfilePhoto())
-                    .build());
-            System.out.println("Deleted profile photo: " + user.getProfilePhoto());
-        }
+        // Ảnh profile (nếu có) được xoá cùng media của các bài viết
+        return mediaPurgeService.submit(id, user.getProfilePhoto() == null ? List.of() : List.of(user.getProfilePhoto()));
     }
 
-    private void deletePostMediaFromS3(User user) {
-        // Giả sử các bài post của user chứa ảnh/video cần xóa
-        List<Post> posts = postRepository.findByCreator_Id(user.getId());
-
-        for (Post post : posts) {
-            if (post.getMediaUrl() != null) {
-                // Xóa ảnh/video từ S3
-                s3Client.deleteObject(builder -> builder
-                        .bucket(AWSConfig.BUCKET_NAME)
-                        .key(post.getMediaUrl())
-                        .build());
-                System.out.println("Deleted media from post: " + post.getMediaUrl());
-            }
-        }
+    public MediaPurgeJob getPurgeJob(String jobId) {
+        return mediaPurgeService.findJob(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Purge job not found"));
     }
-
-
 }
@@ -0,0 +1,22 @@
+package com.codewiz.socialmedia.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Điểm "hot" của bài viết: log10(likes) + tuổi tính từ một mốc cố định / 12.5 giờ.
+// Bài mới hơn 12.5 giờ ngang với bài cũ có gấp 10 lần like. Điểm không giảm theo thời gian
+// (bài mới tự động có điểm cao hơn), nên chỉ cần tính lại khi số like thay đổi và có thể lưu + index.
+public final class HotScore {
+
+    private static final long EPOCH_SECONDS = LocalDateTime.of(2024, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    private static final double SECONDS_PER_DECADE_OF_LIKES = 45_000;
+
+    private HotScore() {
+    }
+
+    public static double of(long likes, LocalDateTime createdAt) {
+        double popularity = Math.log10(Math.max(likes, 1));
+        double age = createdAt == null ? 0 : (createdAt.toEpochSecond(ZoneOffset.UTC) - EPOCH_SECONDS) / SECONDS_PER_DECADE_OF_LIKES;
+        return popularity + age;
+    }
+}
@@ -0,0 +1,33 @@
+package com.codewiz.socialmedia.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Chuẩn hoá chuỗi để so khớp tiền tố: bỏ dấu (kể cả đ/Đ), chữ thường, gộp khoảng trắng.
+// Ví dụ "  Nguyễn  Văn Đức" -> "nguyen van duc"
+public final class TextNormalizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern REGEX_SPECIAL = Pattern.compile("[\\\\.^$|?*+()\\[\\]{}]");
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        String withoutMarks = COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D');
+        return WHITESPACE.matcher(withoutMarks.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    // Escape từng ký tự đặc biệt thay vì dùng \Q...\E để Mongo vẫn nhận ra biểu thức tiền tố và dùng được index
+    public static String escapeRegex(String value) {
+        return REGEX_SPECIAL.matcher(value).replaceAll("\\\\$0");
+    }
+}
@@ -0,0 +1,79 @@
+package com.codewiz.socialmedia.benchmark;
+
+import com.codewiz.socialmedia.config.CachingJwtDecoder;
+import com.codewiz.socialmedia.config.JwtConfig;
+import com.codewiz.socialmedia.model.User;
+import com.codewiz.socialmedia.service.TokenService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private TokenService tokenService;
+    private Authentication authentication;
+    private JwtDecoder decoder;
+    private JwtDecoder cachingDecoder;
+    private String token;
+
+    @Setup
+    public void setup() {
+        JwtConfig jwtConfig = new JwtConfig();
+        ReflectionTestUtils.setField(jwtConfig, "secretKey", "0123456789abcdef0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(jwtConfig, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtConfig, "algorithm", "HS256");
+        ReflectionTestUtils.invokeMethod(jwtConfig, "init");
+
+        User user = new User();
+        user.setId("benchmark-user");
+        user.setName("Nguyễn Văn An");
+        user.setEmail("an@example.com");
+        user.setRoles(List.of("ROLE_USER"));
+        authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+
+        tokenService = new TokenService(jwtConfig);
+        token = tokenService.generateToken(authentication);
+        decoder = NimbusJwtDecoder.withSecretKey(jwtConfig.getSecretKey()).build();
+        cachingDecoder = new CachingJwtDecoder(decoder, 10_000, Duration.ofHours(1), new SimpleMeterRegistry());
+        cachingDecoder.decode(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return tokenService.generateToken(authentication);
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        return decoder.decode(token);
+    }
+
+    @Benchmark
+    public Jwt decodeCached() {
+        return cachingDecoder.decode(token);
+    }
+}
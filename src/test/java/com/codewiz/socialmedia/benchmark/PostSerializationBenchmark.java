@@ -0,0 +1,74 @@
+package com.codewiz.socialmedia.benchmark;
+
+import com.codewiz.socialmedia.model.MediaType;
+import com.codewiz.socialmedia.model.Post;
+import com.codewiz.socialmedia.model.PostCreator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostSerializationBenchmark {
+
+    // Cùng cấu hình với ObjectMapper mà Spring MVC dùng cho response
+    private ObjectMapper objectMapper;
+    private Post post;
+    private Page<Post> page;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        post = post(0);
+        List<Post> posts = IntStream.range(0, 20).mapToObj(PostSerializationBenchmark::post).toList();
+        page = new PageImpl<>(posts, PageRequest.of(0, 20), 1_000);
+    }
+
+    @Benchmark
+    public byte[] serializePost() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(post);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    private static Post post(int i) {
+        Post post = new Post();
+        post.setId("66f1c0ffee0000000000" + String.format("%04d", i));
+        post.setTitle("Bài viết số " + i);
+        post.setText("Nội dung bài viết ".repeat(20));
+        post.setTags(List.of("travel", "food", "hanoi"));
+        post.setMediaUrl("media-" + i + ".jpg");
+        post.setMediaType(MediaType.IMAGE);
+        post.setCreatedAt(LocalDateTime.of(2024, 9, 1, 12, 0).plusMinutes(i));
+        post.setLikes(i * 10L);
+        post.setCreator(PostCreator.builder().id("user-" + i).name("Nguyễn Văn An")
+                .profilePhoto("https://example.com/user-" + i + "-profile?X-Amz-Signature=abc").build());
+        post.setPresignedUrl("https://example.com/media-" + i + ".jpg?X-Amz-Signature=abc");
+        return post;
+    }
+}
@@ -0,0 +1,75 @@
+package com.codewiz.socialmedia.benchmark;
+
+import com.codewiz.socialmedia.service.S3PresignedUrlService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Ký URL là thao tác thuần CPU (HMAC), không cần S3 thật
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PresignedUrlBenchmark {
+
+    private S3Presigner presigner;
+    private S3PresignedUrlService service;
+    private List<String> pageKeys;
+    private long counter;
+
+    @Setup
+    public void setup() {
+        presigner = S3Presigner.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("access", "secret")))
+                .region(Region.AP_SOUTHEAST_2)
+                .endpointOverride(URI.create("http://localhost:4566"))
+                .build();
+        service = new S3PresignedUrlService(presigner, new SimpleMeterRegistry(), 100_000, Duration.ofHours(24));
+        service.generatePresignedUrl("cached-key");
+        pageKeys = IntStream.range(0, 20).mapToObj(i -> "page-key-" + i).toList();
+        service.generatePresignedUrls(pageKeys);
+    }
+
+    @TearDown
+    public void tearDown() {
+        presigner.close();
+    }
+
+    @Benchmark
+    public String cachedUrl() {
+        return service.generatePresignedUrl("cached-key");
+    }
+
+    // Mỗi lần gọi một key mới: đo chi phí ký thật cộng với việc ghi vào cache
+    @Benchmark
+    public String uncachedUrl() {
+        return service.generatePresignedUrl("uncached-key-" + counter++);
+    }
+
+    @Benchmark
+    public Map<String, String> cachedPageOf20() {
+        return service.generatePresignedUrls(pageKeys);
+    }
+}
@@ -0,0 +1,41 @@
+package com.codewiz.socialmedia.benchmark;
+
+import com.codewiz.socialmedia.model.UserSearchCriteria;
+import com.codewiz.socialmedia.service.UserService;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSearchCriteriaBenchmark {
+
+    private final UserSearchCriteria allFilters = new UserSearchCriteria("Nguyễn Văn", "an@example.com", "male",
+            "Vietnam", "Hà Nội", "Hà Nội", "1990-01-01", List.of("https://example.com"), 0, 10, false);
+    private final UserSearchCriteria namePrefix = new UserSearchCriteria("Nguyễn Văn", null, null,
+            null, null, null, null, null, 0, 10, true);
+
+    @Benchmark
+    public Document allFilters() {
+        return UserService.buildSearchCriteria(allFilters).getCriteriaObject();
+    }
+
+    @Benchmark
+    public Document namePrefix() {
+        return UserService.buildSearchCriteria(namePrefix).getCriteriaObject();
+    }
+}
@@ -0,0 +1,295 @@
+package com.codewiz.socialmedia.load;
+
+import com.codewiz.socialmedia.config.AWSConfig;
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.containers.localstack.LocalStackContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Load test: seed dữ liệu qua API (user, bài viết có ảnh) rồi bắn traffic đồng thời trộn đọc feed, tìm kiếm, like,
+// tạo và xoá bài. In throughput, p50/p99 theo từng loại request và fail khi vượt ngưỡng.
+// Không chạy cùng test thường; chạy bằng: mvn -Pload-test test
+// Các tham số (system property): load.users, load.posts-per-user, load.concurrency, load.duration-seconds,
+// load.min-throughput, load.max-p50-ms, load.max-p99-ms, load.max-error-rate
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+public class FeedLoadTest {
+
+    private static final int USERS = Integer.getInteger("load.users", 20);
+    private static final int POSTS_PER_USER = Integer.getInteger("load.posts-per-user", 20);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration-seconds", 30);
+    private static final double MIN_THROUGHPUT = Double.parseDouble(System.getProperty("load.min-throughput", "20"));
+    private static final long MAX_P50_MS = Long.getLong("load.max-p50-ms", 200);
+    private static final long MAX_P99_MS = Long.getLong("load.max-p99-ms", 1500);
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+
+    private static final String[] WORDS = {"travel", "food", "hanoi", "saigon", "coffee", "music", "football", "sunset"};
+
+    @LocalServerPort
+    private int port;
+
+    @Container
+    @ServiceConnection
+    final static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.0.10");
+
+    @Container
+    final static LocalStackContainer localStackContainer =
+            new LocalStackContainer(DockerImageName.parse("localstack/localstack:3.5.0"))
+                    .withServices(LocalStackContainer.Service.S3);
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("aws.s3.accessKey", localStackContainer::getAccessKey);
+        registry.add("aws.s3.secretKey", localStackContainer::getSecretKey);
+        registry.add("aws.s3.region", localStackContainer::getRegion);
+        registry.add("aws.s3.endpoint", () -> localStackContainer.getEndpointOverride(LocalStackContainer.Service.S3));
+        registry.add("security.jwt.secret-key", () -> "load-test-secret-key-0123456789abcdef0123456789");
+        registry.add("security.jwt.expiration-time", () -> "3600000");
+        registry.add("security.jwt.algorithm", () -> "HS256");
+        // Seed nhanh hơn; chi phí BCrypt không phải đối tượng của test này
+        registry.add("security.password.bcrypt-strength", () -> "4");
+    }
+
+    @BeforeAll
+    public static void setUp() {
+        RestAssured.baseURI = "http://localhost";
+        S3Client s3Client = S3Client.builder()
+                .endpointOverride(localStackContainer.getEndpointOverride(LocalStackContainer.Service.S3))
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(localStackContainer.getAccessKey(), localStackContainer.getSecretKey())))
+                .region(Region.of(localStackContainer.getRegion()))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+        s3Client.createBucket(CreateBucketRequest.builder().bucket(AWSConfig.BUCKET_NAME).build());
+    }
+
+    enum Operation {
+        FEED(40), SEARCH(12), USER_SEARCH(5), LIKE(20), CREATE(15), DELETE(8);
+
+        final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        static Operation pick(Random random) {
+            int total = Arrays.stream(values()).mapToInt(op -> op.weight).sum();
+            int roll = random.nextInt(total);
+            for (Operation op : values()) {
+                roll -= op.weight;
+                if (roll < 0) {
+                    return op;
+                }
+            }
+            return FEED;
+        }
+    }
+
+    @Test
+    public void mixedTrafficStaysWithinThresholds() throws Exception {
+        byte[] image = sampleImage();
+        List<String> tokens = seedUsers();
+        List<String> postIds = new CopyOnWriteArrayList<>(seedPosts(tokens, image));
+
+        Map<Operation, ConcurrentLinkedQueue<Long>> latencies = new EnumMap<>(Operation.class);
+        Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+        for (Operation op : Operation.values()) {
+            latencies.put(op, new ConcurrentLinkedQueue<>());
+            errors.put(op, new AtomicLong());
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        long startedAt = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(CONCURRENCY);
+        for (int w = 0; w < CONCURRENCY; w++) {
+            workers.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                // Mỗi worker chỉ xoá bài do chính nó tạo để không đụng dữ liệu seed
+                List<String> ownPosts = new ArrayList<>();
+                while (System.nanoTime() < deadline) {
+                    Operation op = Operation.pick(random);
+                    if (op == Operation.DELETE && ownPosts.isEmpty()) {
+                        op = Operation.FEED;
+                    }
+                    String token = tokens.get(random.nextInt(tokens.size()));
+                    long start = System.nanoTime();
+                    Response response = execute(op, token, random, postIds, ownPosts, image);
+                    latencies.get(op).add(System.nanoTime() - start);
+                    if (response.statusCode() >= 400) {
+                        errors.get(op).incrementAndGet();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(DURATION_SECONDS + 60L, TimeUnit.SECONDS), "Load workers did not finish");
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+
+        long totalRequests = 0;
+        long totalErrors = 0;
+        List<Long> all = new ArrayList<>();
+        System.out.printf("%n%-12s %8s %8s %10s %9s %9s%n", "operation", "count", "errors", "req/s", "p50(ms)", "p99(ms)");
+        for (Operation op : Operation.values()) {
+            long[] sorted = sorted(latencies.get(op));
+            totalRequests += sorted.length;
+            totalErrors += errors.get(op).get();
+            latencies.get(op).forEach(all::add);
+            System.out.printf("%-12s %8d %8d %10.1f %9.1f %9.1f%n", op, sorted.length, errors.get(op).get(),
+                    sorted.length / elapsedSeconds, millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)));
+        }
+        long[] overall = sorted(all);
+        double throughput = totalRequests / elapsedSeconds;
+        double errorRate = totalRequests == 0 ? 1 : (double) totalErrors / totalRequests;
+        long[] feed = sorted(latencies.get(Operation.FEED));
+        System.out.printf("%-12s %8d %8d %10.1f %9.1f %9.1f%n%n", "TOTAL", totalRequests, totalErrors, throughput,
+                millis(percentile(overall, 0.50)), millis(percentile(overall, 0.99)));
+
+        assertTrue(throughput >= MIN_THROUGHPUT, "Throughput " + throughput + " req/s is below " + MIN_THROUGHPUT);
+        assertTrue(errorRate <= MAX_ERROR_RATE, "Error rate " + errorRate + " is above " + MAX_ERROR_RATE);
+        assertTrue(millis(percentile(feed, 0.50)) <= MAX_P50_MS, "Feed p50 is above " + MAX_P50_MS + " ms");
+        assertTrue(millis(percentile(feed, 0.99)) <= MAX_P99_MS, "Feed p99 is above " + MAX_P99_MS + " ms");
+        assertTrue(millis(percentile(overall, 0.99)) <= MAX_P99_MS, "Overall p99 is above " + MAX_P99_MS + " ms");
+    }
+
+    private Response execute(Operation op, String token, Random random, List<String> postIds, List<String> ownPosts, byte[] image) {
+        return switch (op) {
+            case FEED -> random.nextBoolean()
+                    ? request(token).queryParam("page", random.nextInt(5)).queryParam("size", 20).get("/posts")
+                    : request(token).queryParam("cursor", "").queryParam("size", 20).get("/posts");
+            case SEARCH -> request(token).queryParam("keyword", WORDS[random.nextInt(WORDS.length)])
+                    .queryParam("size", 20).get("/posts/search");
+            case USER_SEARCH -> request(token).queryParam("name", "Load").queryParam("prefix", true).get("/user/search");
+            case LIKE -> request(token).post("/posts/" + postIds.get(random.nextInt(postIds.size())) + "/like");
+            case CREATE -> {
+                Response response = createPost(token, random, image);
+                if (response.statusCode() == 200) {
+                    ownPosts.add(response.path("id"));
+                }
+                yield response;
+            }
+            case DELETE -> request(token).delete("/posts/" + ownPosts.remove(ownPosts.size() - 1));
+        };
+    }
+
+    private List<String> seedUsers() {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String email = "load-user-" + i + "@example.com";
+            given().port(port)
+                    .contentType("multipart/form-data")
+                    .multiPart("name", "Load User " + i)
+                    .multiPart("email", email)
+                    .multiPart("password", "password123")
+                    .multiPart("gender", i % 2 == 0 ? "Male" : "Female")
+                    .multiPart("dateOfBirth", "1990-01-01")
+                    .post("/user/signup")
+                    .then().statusCode(200);
+            tokens.add(given().port(port)
+                    .contentType("application/json")
+                    .body(Map.of("email", email, "password", "password123"))
+                    .post("/user/signin")
+                    .then().statusCode(200)
+                    .extract().path("token"));
+        }
+        return tokens;
+    }
+
+    private List<String> seedPosts(List<String> tokens, byte[] image) {
+        Random random = new Random(42);
+        List<String> postIds = new ArrayList<>();
+        for (String token : tokens) {
+            for (int i = 0; i < POSTS_PER_USER; i++) {
+                Response response = createPost(token, random, image);
+                response.then().statusCode(200);
+                postIds.add(response.path("id"));
+            }
+        }
+        return postIds;
+    }
+
+    private Response createPost(String token, Random random, byte[] image) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        return request(token)
+                .contentType("multipart/form-data")
+                .multiPart("title", "A day of " + word)
+                .multiPart("text", ("Notes about " + word + " and " + WORDS[random.nextInt(WORDS.length)] + ". ").repeat(5))
+                .multiPart("tags", word)
+                .multiPart("mediaFile", "photo.png", image, "image/png")
+                .post("/posts");
+    }
+
+    private RequestSpecification request(String token) {
+        return given().port(port).header("Authorization", "Bearer " + token);
+    }
+
+    private static byte[] sampleImage() throws IOException {
+        BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(0x3A7BD5));
+        graphics.fillRect(0, 0, 320, 240);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static long[] sorted(Collection<Long> values) {
+        return values.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,187 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.model.Post;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+@Testcontainers
+class LikeCounterBufferTest {
+
+    @Container
+    static final MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.0.10");
+
+    private static MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void connect() {
+        mongoClient = MongoClients.create(mongoDBContainer.getReplicaSetUrl());
+    }
+
+    @AfterAll
+    static void disconnect() {
+        mongoClient.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = spy(new MongoTemplate(mongoClient, "likes-test"));
+        mongoTemplate.dropCollection(Post.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void likesAreNotLostWhenIncrementRacesWithFlush() throws Exception {
+        List<String> postIds = List.of(insertPost(), insertPost(), insertPost());
+        LikeCounterBuffer buffer = newBuffer();
+
+        int threads = 8;
+        int likesPerThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean liking = new AtomicBoolean(true);
+        try {
+            List<Future<?>> likers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                likers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < likesPerThread; i++) {
+                        buffer.increment(postIds.get(i % postIds.size()));
+                    }
+                    return null;
+                }));
+            }
+            Future<?> flusher = executor.submit(() -> {
+                start.await();
+                while (liking.get()) {
+                    buffer.flush();
+                }
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> liker : likers) {
+                liker.get(60, TimeUnit.SECONDS);
+            }
+            liking.set(false);
+            flusher.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        buffer.flush();
+
+        long total = postIds.stream().mapToLong(this::storedLikes).sum();
+        assertEquals((long) threads * likesPerThread, total);
+        postIds.forEach(id -> assertEquals(0, buffer.pendingLikes(id)));
+    }
+
+    @Test
+    void failedFlushRequeuesLikes() {
+        String postId = insertPost();
+        LikeCounterBuffer buffer = newBuffer();
+        for (int i = 0; i < 3; i++) {
+            buffer.increment(postId);
+        }
+
+        BulkOperations failing = mock(BulkOperations.class);
+        when(failing.execute()).thenThrow(new DataAccessResourceFailureException("Mongo is down"));
+        doReturn(failing).when(mongoTemplate).bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Post.class));
+
+        buffer.flush();
+
+        assertEquals(0, storedLikes(postId));
+        assertEquals(3, buffer.pendingLikes(postId));
+        assertEquals(1, meterRegistry.counter("posts.likes.flush.failures").count());
+
+        doCallRealMethod().when(mongoTemplate).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+        buffer.increment(postId);
+        buffer.flush();
+
+        assertEquals(4, storedLikes(postId));
+        assertEquals(0, buffer.pendingLikes(postId));
+    }
+
+    @Test
+    void likesBeingWrittenAreNeverCountedTwice() {
+        String postId = insertPost();
+        LikeCounterBuffer buffer = newBuffer();
+        buffer.increment(postId);
+        buffer.increment(postId);
+
+        List<Long> observed = new ArrayList<>();
+        doAnswer(bulkOps -> {
+            BulkOperations bulk = spy((BulkOperations) bulkOps.callRealMethod());
+            doAnswer(execute -> {
+                observed.add(storedLikes(postId) + buffer.pendingLikes(postId));
+                Object result = execute.callRealMethod();
+                observed.add(storedLikes(postId) + buffer.pendingLikes(postId));
+                return result;
+            }).when(bulk).execute();
+            return bulk;
+        }).when(mongoTemplate).bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Post.class));
+
+        buffer.flush();
+
+        // Trước khi ghi xong có thể thiếu, sau khi ghi xong không được cộng thêm lần nữa
+        assertEquals(List.of(0L, 2L), observed);
+        assertEquals(2, storedLikes(postId) + buffer.pendingLikes(postId));
+    }
+
+    @Test
+    void shutdownFlushPersistsPendingLikes() {
+        String postId = insertPost();
+        LikeCounterBuffer buffer = newBuffer();
+        buffer.increment(postId);
+        buffer.increment(postId);
+
+        buffer.flushOnShutdown();
+
+        assertEquals(2, storedLikes(postId));
+        assertEquals(0, buffer.pendingLikes(postId));
+    }
+
+    private LikeCounterBuffer newBuffer() {
+        return new LikeCounterBuffer(mongoTemplate, event -> { }, meterRegistry, true);
+    }
+
+    private String insertPost() {
+        Post post = new Post();
+        post.setTitle("title");
+        return mongoTemplate.insert(post).getId();
+    }
+
+    private long storedLikes(String postId) {
+        return mongoTemplate.findById(postId, Post.class).getLikes();
+    }
+}
@@ -0,0 +1,185 @@
+package com.codewiz.socialmedia.service;
+
+import com.codewiz.socialmedia.dto.TrendingTag;
+import com.codewiz.socialmedia.model.TrendingTagSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrendingTagCounterTest {
+
+    private static final long TAU = 1_000;
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void scoresDecayExponentiallyWithTime() {
+        TrendingTagCounter counter = new TrendingTagCounter(TAU, 10, T0);
+        for (int i = 0; i < 3; i++) {
+            counter.add(Set.of("java"), T0);
+        }
+        assertEquals(3.0, score(counter, "java", T0), 1e-9);
+        assertEquals(3.0 / Math.E, score(counter, "java", T0 + TAU), 1e-9);
+
+        counter.add(Set.of("java"), T0 + TAU);
+        assertEquals(3.0 * Math.exp(-2) + Math.exp(-1), score(counter, "java", T0 + 2 * TAU), 1e-9);
+    }
+
+    @Test
+    void scoresBelowThresholdAreNotReported() {
+        TrendingTagCounter counter = new TrendingTagCounter(TAU, 10, T0);
+        counter.add(Set.of("java"), T0);
+        // e^-3 ≈ 0.0498 < MIN_SCORE
+        assertTrue(counter.top(10, T0 + 3 * TAU).isEmpty());
+    }
+
+    @Test
+    void newTagOnlyEntersFullCandidateSetWhenItBeatsTheWeakest() {
+        TrendingTagCounter counter = new TrendingTagCounter(TAU, 2, T0);
+        addTimes(counter, "a", 3, T0);
+        addTimes(counter, "b", 2, T0);
+
+        counter.add(Set.of("c"), T0);
+        assertEquals(Set.of("a", "b"), tags(counter, T0));
+
+        // sketch vẫn đếm "c" khi nó chưa là ứng viên: lượt thứ 3 vượt "b" (2) và thay chỗ
+        counter.add(Set.of("c"), T0);
+        assertEquals(Set.of("a", "b"), tags(counter, T0));
+        counter.add(Set.of("c"), T0);
+        assertEquals(Set.of("a", "c"), tags(counter, T0));
+        assertEquals(3.0, score(counter, "c", T0), 1e-9);
+    }
+
+    @Test
+    void recentTagEvictsStaleCandidateWithMoreRawUses() {
+        TrendingTagCounter counter = new TrendingTagCounter(TAU, 2, T0);
+        addTimes(counter, "a", 3, T0);
+        addTimes(counter, "b", 2, T0);
+
+        long later = T0 + 2 * TAU;
+        counter.add(Set.of("c"), later);
+
+        Map<String, Double> top = scores(counter, later);
+        assertEquals(Set.of("a", "c"), top.keySet());
+        assertEquals(1.0, top.get("c"), 1e-9);
+        assertEquals(3.0 * Math.exp(-2), top.get("a"), 1e-9);
+    }
+
+    @Test
+    void rebaseKeepsScoresAndDropsFadedCandidates() {
+        TrendingTagCounter counter = new TrendingTagCounter(TAU, 10, T0);
+        counter.add(Set.of("faded"), T0);
+        addTimes(counter, "steady", 4, T0 + 29 * TAU);
+
+        long rollover = T0 + 31 * TAU;
+        counter.add(Set.of("fresh"), rollover);
+
+        assertEquals(rollover, counter.landmark());
+        assertEquals(2, counter.candidateCount());
+        Map<String, Double> top = scores(counter, rollover);
+        assertFalse(top.containsKey("faded"));
+        assertEquals(4.0 * Math.exp(-2), top.get("steady"), 1e-9);
+        assertEquals(1.0, top.get("fresh"), 1e-9);
+
+        // sketch được đưa về landmark mới cùng với ứng viên nên lượt tiếp theo cộng dồn đúng
+        counter.add(Set.of("steady"), rollover);
+        assertEquals(4.0 * Math.exp(-2) + 1.0, score(counter, "steady", rollover), 1e-9);
+    }
+
+    @Test
+    void mergingIntoEmptyCounterRestoresSameScores() {
+        TrendingTagCounter counter = new TrendingTagCounter(TAU, 10, T0);
+        addTimes(counter, "java", 2, T0);
+        counter.add(Set.of("spring"), T0 + TAU);
+
+        TrendingTagCounter restored = new TrendingTagCounter(TAU, 10, T0 - 5 * TAU);
+        restored.merge(snapshot(counter));
+
+        long now = T0 + 2 * TAU;
+        assertEquals(scores(counter, now), scores(restored, now));
+        restored.add(Set.of("java"), now);
+        counter.add(Set.of("java"), now);
+        assertEquals(scores(counter, now).keySet(), scores(restored, now).keySet());
+        assertEquals(score(counter, "java", now), score(restored, "java", now), 1e-9);
+    }
+
+    @Test
+    void mergeAddsCountsAcrossDifferentLandmarks() {
+        TrendingTagCounter first = new TrendingTagCounter(TAU, 10, T0);
+        addTimes(first, "java", 2, T0);
+        // landmark xa hơn REBASE_AFTER để merge phải dời landmark của bên nhận
+        long later = T0 + 40 * TAU;
+        TrendingTagCounter second = new TrendingTagCounter(TAU, 10, later);
+        addTimes(second, "java", 3, later);
+        second.add(Set.of("kotlin"), later);
+
+        first.merge(snapshot(second));
+
+        assertEquals(later, first.landmark());
+        assertEquals(3.0 + 2.0 * Math.exp(-40), score(first, "java", later), 1e-9);
+        assertEquals(1.0, score(first, "kotlin", later), 1e-9);
+    }
+
+    @Test
+    void mergeKeepsStrongestCandidatesOfBothSides() {
+        TrendingTagCounter first = new TrendingTagCounter(TAU, 2, T0);
+        addTimes(first, "a", 5, T0);
+        addTimes(first, "b", 1, T0);
+        TrendingTagCounter second = new TrendingTagCounter(TAU, 2, T0);
+        addTimes(second, "c", 3, T0);
+        addTimes(second, "b", 1, T0);
+
+        first.merge(snapshot(second));
+
+        assertEquals(Set.of("a", "c"), tags(first, T0));
+    }
+
+    @Test
+    void topOverSeveralCountersSumsTheirCells() {
+        TrendingTagCounter local = new TrendingTagCounter(TAU, 10, T0);
+        addTimes(local, "java", 2, T0);
+        TrendingTagCounter other = new TrendingTagCounter(TAU, 10, T0 + TAU);
+        addTimes(other, "java", 1, T0 + TAU);
+        other.add(Set.of("go"), T0 + TAU);
+
+        long now = T0 + TAU;
+        List<TrendingTag> top = TrendingTagCounter.top(List.of(local, other), 10, now);
+
+        assertEquals("java", top.get(0).tag());
+        assertEquals(2.0 / Math.E + 1.0, top.get(0).score(), 1e-9);
+        assertEquals(new TrendingTag("go", 1.0), top.get(1));
+        assertEquals(1, TrendingTagCounter.top(List.of(local, other), 1, now).size());
+    }
+
+    private static TrendingTagSnapshot snapshot(TrendingTagCounter counter) {
+        TrendingTagSnapshot snapshot = new TrendingTagSnapshot();
+        counter.snapshotInto(snapshot);
+        return snapshot;
+    }
+
+    private static void addTimes(TrendingTagCounter counter, String tag, int times, long now) {
+        for (int i = 0; i < times; i++) {
+            counter.add(Set.of(tag), now);
+        }
+    }
+
+    private static double score(TrendingTagCounter counter, String tag, long now) {
+        Double score = scores(counter, now).get(tag);
+        return score == null ? 0 : score;
+    }
+
+    private static Set<String> tags(TrendingTagCounter counter, long now) {
+        return scores(counter, now).keySet();
+    }
+
+    private static Map<String, Double> scores(TrendingTagCounter counter, long now) {
+        List<TrendingTag> top = counter.top(TrendingTagService.MAX_LIMIT, now);
+        return top.stream().collect(Collectors.toMap(TrendingTag::tag, TrendingTag::score));
+    }
+}